@@ -0,0 +1,115 @@
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+/*
+ The default package half of benchmarks.Harness: it can see the player
+ classes of ThreePrisonersDilemma, which the benchmarks themselves cannot. */
+public class BenchmarkHarness implements benchmarks.Harness {
+
+	final ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+
+	ThreePrisonersDilemma.Player A, B, C;
+
+	int[] playsA, playsB, playsC;
+	PackedHistory packedA, packedB, packedC;
+
+	ThreePrisonersDilemma.Player player;
+	int n;
+	int[] myHistory, oppHistory1, oppHistory2;
+
+	ThreePrisonersDilemma.Player newPlayer(String strategy) {
+		switch (strategy) {
+		case "NicePlayer": return new ThreePrisonersDilemma.NicePlayer();
+		case "NastyPlayer": return new ThreePrisonersDilemma.NastyPlayer();
+		case "RandomPlayer": return new ThreePrisonersDilemma.RandomPlayer();
+		case "TolerantPlayer": return new ThreePrisonersDilemma.TolerantPlayer();
+		case "FreakyPlayer": return new ThreePrisonersDilemma.FreakyPlayer();
+		case "T4TPlayer": return new ThreePrisonersDilemma.T4TPlayer();
+		case "RX": return new ThreePrisonersDilemma.RX();
+		case "RX2": return new ThreePrisonersDilemma.RX2();
+		case "RX3": return new ThreePrisonersDilemma.RX3();
+		case "RX4": return new ThreePrisonersDilemma.RX4();
+		case "Shaun": return new ThreePrisonersDilemma.Shaun();
+		}
+		throw new IllegalArgumentException("Unknown strategy " + strategy);
+	}
+
+	public void prepareMatch(String strategyA, String strategyB, String strategyC) {
+		A = newPlayer(strategyA);
+		B = newPlayer(strategyB);
+		C = newPlayer(strategyC);
+	}
+
+	public float[] playMatch(int rounds) {
+		return game.scoresOfMatch(A, B, C, rounds);
+	}
+
+	public void useSandbox(boolean sandboxed) {
+		game.sandbox = sandboxed ? new Sandbox(100000000L, Collections.<String>emptySet()) : null;
+	}
+
+	public void prepareStrategy(String strategy, int n, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		player = newPlayer(strategy);
+		this.n = n;
+		myHistory = new int[n];
+		oppHistory1 = new int[n];
+		oppHistory2 = new int[n];
+		for (int i=0; i<n; i++) {
+			myHistory[i] = random.nextInt(2);
+			oppHistory1[i] = random.nextInt(2);
+			oppHistory2[i] = random.nextInt(2);
+		}
+		player.stats = MatchStats.of(n, myHistory, oppHistory1, oppHistory2).view(0);
+	}
+
+	public int selectAction() {
+		return player.selectAction(n, myHistory, oppHistory1, oppHistory2);
+	}
+
+	// Every built-in strategy, in as equal numbers as numPlayers allows.
+	public void prepareTournament(int numPlayers, long seed) {
+		StrategyRegistry field = StrategyRegistry.builtIn();
+		String[] strategies = field.strategies();
+		for (int s=0; s<strategies.length; s++)
+			field.add(strategies[s], numPlayers / strategies.length + (s < numPlayers % strategies.length ? 1 : 0));
+		game.setField(field);
+		game.seed = seed;
+	}
+
+	public double[] playTournament() {
+		return game.playTournament().totals();
+	}
+
+	public void prepareScoring(int rounds, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		playsA = new int[rounds];
+		playsB = new int[rounds];
+		playsC = new int[rounds];
+		for (int i=0; i<rounds; i++) {
+			playsA[i] = random.nextInt(2);
+			playsB[i] = random.nextInt(2);
+			playsC[i] = random.nextInt(2);
+		}
+		packedA = PackedHistory.of(playsA, rounds);
+		packedB = PackedHistory.of(playsB, rounds);
+		packedC = PackedHistory.of(playsC, rounds);
+	}
+
+	public long scoreByRound() {
+		int[][][] payoff = ThreePrisonersDilemma.payoff;
+		long ScoreA = 0, ScoreB = 0, ScoreC = 0;
+		for (int i=0; i<playsA.length; i++) {
+			int PlayA = playsA[i], PlayB = playsB[i], PlayC = playsC[i];
+			ScoreA = ScoreA + payoff[PlayA][PlayB][PlayC];
+			ScoreB = ScoreB + payoff[PlayB][PlayC][PlayA];
+			ScoreC = ScoreC + payoff[PlayC][PlayA][PlayB];
+		}
+		return ScoreA + ScoreB + ScoreC;
+	}
+
+	public long scoreByBlock() {
+		long[] scores = ThreePrisonersDilemma.payoffTable.score(packedA, packedB, packedC, 0, playsA.length);
+		return scores[0] + scores[1] + scores[2];
+	}
+}
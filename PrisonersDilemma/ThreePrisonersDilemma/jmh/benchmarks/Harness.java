@@ -0,0 +1,48 @@
+package benchmarks;
+
+/*
+ JMH refuses benchmarks in the default package, and classes in a named package
+ cannot refer to the default package where the game lives. Harness bridges the
+ two: BenchmarkHarness, next to ThreePrisonersDilemma, implements it, and the
+ benchmarks load that class by name once during setup. The measured calls then
+ go through this interface only, never through reflection. */
+public interface Harness {
+
+	// Creates fresh players of the three named strategies for the next match.
+	void prepareMatch(String strategyA, String strategyB, String strategyC);
+
+	// Plays the prepared players against each other and returns their scores.
+	float[] playMatch(int rounds);
+
+	// Plays the following matches through a Sandbox with a generous budget, or not.
+	void useSandbox(boolean sandboxed);
+
+	// Creates one player of the named strategy and fills random histories of n rounds.
+	void prepareStrategy(String strategy, int n, long seed);
+
+	// Asks the prepared player for its move after the n rounds of history.
+	int selectAction();
+
+	// Sets up a tournament of numPlayers entrants, copies of every built-in strategy.
+	void prepareTournament(int numPlayers, long seed);
+
+	// Plays the prepared tournament without printing, returning the totals.
+	double[] playTournament();
+
+	// Fills random plays for the given number of rounds, for the scoring benchmarks.
+	void prepareScoring(int rounds, long seed);
+
+	// Scores the prepared rounds one at a time through payoff[][][].
+	long scoreByRound();
+
+	// Scores the prepared rounds in blocks through PayoffTable.
+	long scoreByBlock();
+
+	static Harness load() {
+		try {
+			return (Harness) Class.forName("BenchmarkHarness").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("BenchmarkHarness is missing from the classpath", e);
+		}
+	}
+}
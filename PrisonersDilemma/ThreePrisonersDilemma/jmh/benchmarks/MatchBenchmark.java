@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Throughput of scoresOfMatch, in rounds per second, for a few representative
+ triples. Fresh players are made for every match, as runTournament does. Each
+ triple is played with and without a Sandbox, to keep its cost in view. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+
+	static final int ROUNDS = 100;
+
+	@Param({"RX4,T4TPlayer,TolerantPlayer", "RX,RX2,RX3", "NastyPlayer,NicePlayer,Shaun", "TolerantPlayer,TolerantPlayer,TolerantPlayer"})
+	String triple;
+
+	@Param({"false", "true"})
+	boolean sandboxed;
+
+	Harness harness;
+	String[] strategies;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		harness = Harness.load();
+		strategies = triple.split(",");
+		harness.useSandbox(sandboxed);
+	}
+
+	@Setup(Level.Invocation)
+	public void newPlayers() {
+		harness.prepareMatch(strategies[0], strategies[1], strategies[2]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public float[] scoresOfMatch() {
+		return harness.playMatch(ROUNDS);
+	}
+}
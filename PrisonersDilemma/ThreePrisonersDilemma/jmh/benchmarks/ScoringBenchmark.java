@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Scoring alone, in rounds per second: the per-round walk through payoff[][][]
+ that scoresOfMatch used to do, against block scoring of packed histories. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+	static final int ROUNDS = 100000;
+
+	Harness harness;
+
+	@Setup
+	public void setUp() {
+		harness = Harness.load();
+		harness.prepareScoring(ROUNDS, 42);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public long byRound() {
+		return harness.scoreByRound();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public long byBlock() {
+		return harness.scoreByBlock();
+	}
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Cost of a single selectAction call for each strategy, late in a match (n
+ rounds of random history behind it), where history scans are most expensive. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+
+	@Param({"TolerantPlayer", "RX", "RX2", "RX3", "RX4", "Shaun", "T4TPlayer"})
+	String strategy;
+
+	@Param({"100"})
+	int n;
+
+	Harness harness;
+
+	@Setup
+	public void setUp() {
+		harness = Harness.load();
+		harness.prepareStrategy(strategy, n, 42);
+	}
+
+	@Benchmark
+	public int selectAction() {
+		return harness.selectAction();
+	}
+}
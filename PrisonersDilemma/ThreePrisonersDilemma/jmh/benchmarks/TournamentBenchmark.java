@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Wall time of a whole tournament (every i <= j <= k triple) at a few field
+ sizes, each made of every built-in strategy in about equal numbers. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TournamentBenchmark {
+
+	@Param({"10", "30", "90"})
+	int numPlayers;
+
+	Harness harness;
+
+	@Setup
+	public void setUp() {
+		harness = Harness.load();
+		harness.prepareTournament(numPlayers, 42);
+	}
+
+	@Benchmark
+	public double[] runTournament() {
+		return harness.playTournament();
+	}
+}
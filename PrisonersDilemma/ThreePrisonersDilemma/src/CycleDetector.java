@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/*
+ CycleDetector spots a match that has started going round in circles, so the
+ engine can work out the rest of it instead of playing it.
+
+ When all three players are deterministic and finite-state (see
+ Player.finiteState), the next round depends only on the last L rounds of the
+ match, where L is the longest lookback of the three. Those rounds, three
+ bits each, are the state of the match; as soon as a state comes up a second
+ time, every round from then on repeats the rounds played since it first
+ came up. With L = 1, as for RX4 and Shaun, there are 8 states, so a cycle
+ shows within 9 rounds of the start.
+
+ The rest of the match is then scored in closed form from the packed
+ histories: whole turns of the cycle times the payoff of one turn, plus the
+ payoff of the part turn at the end. The sums are the same integers the full
+ simulation adds up, so the scores are exactly equal.
+
+ States index a table of the round each was first seen in, stamped with the
+ match it was seen in so that nothing needs clearing between matches. The
+ table has 2^(3L) entries, which limits L to MAX_LOOKBACK. */
+class CycleDetector {
+
+	static final int MAX_LOOKBACK = 4;
+
+	private final int[] seenAt = new int[1 << (3 * MAX_LOOKBACK)];
+	private final int[] seenIn = new int[1 << (3 * MAX_LOOKBACK)];
+	private int match;
+
+	private int state, mask, start;
+
+	// Starts a match where no player looks back further than lookback rounds.
+	CycleDetector reset(int lookback) {
+		if (lookback > MAX_LOOKBACK)
+			throw new IllegalArgumentException("Lookback " + lookback + " is more than " + MAX_LOOKBACK);
+		if (++match == 0) {
+			Arrays.fill(seenIn, 0);
+			match = 1;
+		}
+		state = 0;
+		mask = (1 << (3 * lookback)) - 1;
+		// Players may treat the first round apart, so states start after it.
+		start = Math.max(lookback, 1);
+		return this;
+	}
+
+	/* Takes the joint action code of the round just played, with played the
+	 number of rounds played so far. Returns the earlier number of rounds
+	 played at which the match was in the same state, or -1 if it is new. */
+	int record(int code, int played) {
+		state = ((state << 3) | code) & mask;
+		if (played < start)
+			return -1;
+		if (seenIn[state] == match)
+			return seenAt[state];
+		seenIn[state] = match;
+		seenAt[state] = played;
+		return -1;
+	}
+
+	/* The scores of a match of the given number of rounds of which only the
+	 first played are in the histories, rounds [from, played) being the cycle
+	 that repeats from there on. */
+	static long[] score(PayoffTable payoffs, PackedHistory[] histories, int from, int played, int rounds) {
+		PackedHistory a = histories[0], b = histories[1], c = histories[2];
+		int period = played - from;
+		long turns = (rounds - played) / period;
+		long[] scores = payoffs.score(a, b, c, 0, played);
+		long[] turn = payoffs.score(a, b, c, from, played);
+		long[] end = payoffs.score(a, b, c, from, from + (rounds - played) % period);
+		for (int s=0; s<3; s++)
+			scores[s] += turns * turn[s] + end[s];
+		return scores;
+	}
+
+	// Appends the rounds of the match that were worked out rather than played.
+	static void extend(PackedHistory history, int from, int played, int rounds) {
+		int period = played - from;
+		for (int round=played; round<rounds; round++)
+			history.append(history.get(from + (round - played) % period));
+	}
+}
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ Evolution lets the population shares of the strategies in the field change
+ over many generations, instead of ranking them once.
+
+ The expensive part, playing matches, is done once up front: for every triple
+ of strategy types (t, u, v) it estimates the expected score of t in the first
+ seat against u and v, by averaging a number of sample matches played with
+ scoresOfMatch (matches between deterministic strategies come straight from
+ the MatchCache). After that a generation only needs this payoff tensor: with
+ population shares x, a strategy's fitness is the sum over u and v of
+ x[u] * x[v] * payoff[t][u][v]. Two dynamics are offered:
+
+ - replicator dynamics, for an infinite population: each generation every
+   share grows in proportion to its fitness relative to the average;
+ - a Moran process, for a finite population of the field's size: one player,
+   picked in proportion to fitness, reproduces and one, picked uniformly,
+   dies; a generation is as many such steps as there are players.
+
+ The tensor is computed on a pool of -threads threads, one first type per
+ task. The fitness of each type within a generation is computed on the same
+ pool too, one slice of the types per thread, once there are enough types
+ for it to pay off. The pool lives as long as the Evolution; close() shuts
+ it down. */
+class Evolution {
+
+	// Below this many types the fitness of a generation is computed on one thread.
+	static final int PARALLEL_FITNESS_TYPES = 32;
+
+	final ThreePrisonersDilemma game;
+	final String[] types;
+	final StrategyRegistry.Factory[] factories;
+	final int threads;
+	final ExecutorService pool;
+
+	int samples = 20; // matches played to estimate each entry of the tensor
+
+	// payoff[t][u][v] is the expected score of a t in the first seat, with a u
+	// in the second seat and a v in the third.
+	double[][][] payoff;
+
+	Evolution(ThreePrisonersDilemma game, String[] types, int threads) {
+		this.game = game;
+		this.types = types;
+		this.threads = threads;
+		pool = Executors.newFixedThreadPool(threads);
+		factories = new StrategyRegistry.Factory[types.length];
+		for (int t=0; t<types.length; t++)
+			factories[t] = game.field.factory(types[t]);
+	}
+
+	void computePayoffs() {
+		int numTypes = types.length;
+		payoff = new double[numTypes][numTypes][numTypes];
+		if (game.matchCache != null)
+			game.matchCache.clear();
+		List<Future<?>> rows = new ArrayList<>();
+		for (int t=0; t<numTypes; t++) {
+			final int row = t;
+			rows.add(pool.submit(() -> computeRow(row)));
+		}
+		try {
+			for (Future<?> row : rows)
+				row.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while computing payoffs", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		}
+	}
+
+	void close() {
+		pool.shutdownNow();
+	}
+
+	/* Fills in every triple whose first type is t and which is the smallest of
+	 its rotations. Rotating the seats of a match rotates its scores, so one
+	 match fills in all three rotations, and every entry is written once. */
+	void computeRow(int t) {
+		int numTypes = types.length;
+		for (int u=0; u<numTypes; u++) for (int v=0; v<numTypes; v++) {
+			if (!smallestRotation(t, u, v))
+				continue;
+			double[] sum = new double[3];
+			for (int s=0; s<samples; s++) {
+				SplittableRandom random = MatchRandom.beginMatch(game.seed, t, u * numTypes + v, s);
+				int rounds = game.roundsOfMatch(random);
+				ThreePrisonersDilemma.Player A = newPlayer(0, t);
+				ThreePrisonersDilemma.Player B = newPlayer(1, u);
+				ThreePrisonersDilemma.Player C = newPlayer(2, v);
+				float[] matchResults = game.playMatch(A, B, C, rounds);
+				for (int p=0; p<3; p++)
+					sum[p] += matchResults[p];
+			}
+			payoff[t][u][v] = sum[0] / samples;
+			payoff[u][v][t] = sum[1] / samples;
+			payoff[v][t][u] = sum[2] / samples;
+		}
+	}
+
+	static boolean smallestRotation(int t, int u, int v) {
+		return compare(t, u, v, u, v, t) <= 0 && compare(t, u, v, v, t, u) <= 0;
+	}
+
+	private static int compare(int a1, int a2, int a3, int b1, int b2, int b3) {
+		if (a1 != b1) return a1 - b1;
+		if (a2 != b2) return a2 - b2;
+		return a3 - b3;
+	}
+
+	ThreePrisonersDilemma.Player newPlayer(int seat, int type) {
+		MatchRandom.beginSeat(seat);
+		return factories[type].create(game);
+	}
+
+	// The expected match score of each type in a population with these shares.
+	double[] fitness(double[] shares) {
+		int numTypes = types.length;
+		double[] fitness = new double[numTypes];
+		if (numTypes < PARALLEL_FITNESS_TYPES || threads == 1) {
+			fitness(shares, fitness, 0, numTypes);
+			return fitness;
+		}
+		List<Future<?>> slices = new ArrayList<>(threads);
+		for (int slice=0; slice<threads; slice++) {
+			int from = numTypes * slice / threads, to = numTypes * (slice + 1) / threads;
+			slices.add(pool.submit(() -> fitness(shares, fitness, from, to)));
+		}
+		try {
+			for (Future<?> slice : slices)
+				slice.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while computing fitness", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Computing fitness failed", e.getCause());
+		}
+		return fitness;
+	}
+
+	// Fills in the fitness of the types from up to to; each is summed alone,
+	// so the result is the same whichever thread does it.
+	private void fitness(double[] shares, double[] fitness, int from, int to) {
+		int numTypes = types.length;
+		for (int t=from; t<to; t++) {
+			double f = 0;
+			for (int u=0; u<numTypes; u++) {
+				if (shares[u] == 0)
+					continue;
+				double row = 0;
+				for (int v=0; v<numTypes; v++)
+					row += shares[v] * payoff[t][u][v];
+				f += shares[u] * row;
+			}
+			fitness[t] = f;
+		}
+	}
+
+	// One generation of the discrete replicator dynamics.
+	double[] replicatorStep(double[] shares) {
+		double[] fitness = fitness(shares);
+		double average = 0;
+		for (int t=0; t<shares.length; t++)
+			average += shares[t] * fitness[t];
+		double[] next = new double[shares.length];
+		for (int t=0; t<shares.length; t++)
+			next[t] = shares[t] * fitness[t] / average;
+		return next;
+	}
+
+	// One generation of the Moran process: as many birth-death steps as players.
+	void moranGeneration(int[] counts, SplittableRandom random) {
+		int population = 0;
+		for (int count : counts)
+			population += count;
+		double[] shares = new double[counts.length];
+		for (int step=0; step<population; step++) {
+			for (int t=0; t<counts.length; t++)
+				shares[t] = (double) counts[t] / population;
+			double[] fitness = fitness(shares);
+			double[] weight = new double[counts.length];
+			for (int t=0; t<counts.length; t++)
+				weight[t] = counts[t] * fitness[t];
+			int born = pick(weight, random);
+			for (int t=0; t<counts.length; t++)
+				weight[t] = counts[t];
+			int dies = pick(weight, random);
+			counts[born]++;
+			counts[dies]--;
+		}
+	}
+
+	private static int pick(double[] weight, SplittableRandom random) {
+		double total = 0;
+		for (double w : weight)
+			total += w;
+		double r = random.nextDouble() * total;
+		int last = 0;
+		for (int t=0; t<weight.length; t++) {
+			if (weight[t] <= 0)
+				continue;
+			last = t;
+			r -= weight[t];
+			if (r < 0)
+				return t;
+		}
+		return last;
+	}
+
+	void printHeader() {
+		StringBuilder line = new StringBuilder("generation");
+		for (String type : types)
+			line.append('\t').append(type);
+		System.out.println(line);
+	}
+
+	void printShares(int generation, double[] shares) {
+		StringBuilder line = new StringBuilder(Integer.toString(generation));
+		for (double share : shares)
+			line.append('\t').append(String.format("%.4f", share));
+		System.out.println(line);
+	}
+
+	/* Evolves the field of ThreePrisonersDilemma, starting from the shares
+	 given by its population counts. Options:
+	 "-generations G" (default 1000), "-every E" prints every E generations
+ (0 for the last one only),
+	 "-moran" runs the Moran process instead of the replicator dynamics,
+	 "-samples K" matches per payoff entry, and "-seed S", "-threads N",
+	 "-field F" and "-plugins D" as for ThreePrisonersDilemma. */
+	public static void main(String[] args) throws IOException {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		int generations = 1000, every = 100, samples = 20;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean moran = false;
+		for (int i=0; i+1<args.length; i++)
+			if (args[i].equals("-plugins"))
+				PluginLoader.load(Paths.get(args[i+1]), game.field);
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-moran"))
+				moran = true;
+			if (i+1 == args.length)
+				continue;
+			if (args[i].equals("-generations"))
+				generations = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-every"))
+				every = Integer.parseInt(args[i+1]);
+				if (every < 0)
+					throw new IllegalArgumentException("-every takes a number of generations, 0 or more, got " + every);
+			if (args[i].equals("-samples"))
+				samples = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-seed"))
+				game.seed = Long.parseLong(args[i+1]);
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-field"))
+				game.setField(game.field.loadField(Paths.get(args[i+1])));
+		}
+
+		// The same strategy may be listed more than once in the field.
+		Map<String, Integer> population = new LinkedHashMap<>();
+		String[] names = game.field.fieldStrategies();
+		int[] counts = game.field.fieldCounts();
+		for (int s=0; s<names.length; s++)
+			population.merge(names[s], counts[s], Integer::sum);
+		String[] types = population.keySet().toArray(new String[0]);
+
+		Evolution evolution = new Evolution(game, types, Math.max(threads, 1));
+		evolution.samples = samples;
+		try {
+			evolution.evolve(population, generations, every, moran);
+		} finally {
+			evolution.close();
+		}
+	}
+
+	// Computes the payoffs and plays the generations, printing the shares.
+	void evolve(Map<String, Integer> population, int generations, int every, boolean moran) {
+		long start = System.nanoTime();
+		computePayoffs();
+		System.out.println("Payoff tensor of " + types.length + " strategies in "
+				+ (System.nanoTime() - start) / 1000000 + " ms (seed " + game.seed + ")");
+
+		int[] sizes = new int[types.length];
+		double[] shares = new double[types.length];
+		int total = 0;
+		for (int t=0; t<types.length; t++) {
+			sizes[t] = population.get(types[t]);
+			total += sizes[t];
+		}
+		for (int t=0; t<types.length; t++)
+			shares[t] = (double) sizes[t] / total;
+
+		SplittableRandom random = new SplittableRandom(game.seed);
+		printHeader();
+		printShares(0, shares);
+		for (int g=1; g<=generations; g++) {
+			if (moran) {
+				moranGeneration(sizes, random);
+				for (int t=0; t<types.length; t++)
+					shares[t] = (double) sizes[t] / total;
+			} else {
+				shares = replicatorStep(shares);
+			}
+			if ((every > 0 && g % every == 0) || g == generations)
+				printShares(g, shares);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/*
+ Leaderboard keeps the entrants in ranking order while the tournament runs,
+ so the standings can be asked for at any point instead of sorted once at
+ the end.
+
+ It is an order-statistics treap with one node per entrant: a binary search
+ tree on the ranking order, balanced by fixed random priorities, where every
+ node also knows the size of its subtree. Moving an entrant after its score
+ changes, finding an entrant's rank and finding the entrant at a given rank
+ all take O(log N) on average; listing the top k takes O(k + log N).
+
+ Entrants are ranked by score, highest first. Ties go to the lower entrant
+ index, which is the order the old insertion sort left equal scores in.
+
+ All methods are synchronized, so another thread can look at the standings
+ while the tournament thread updates them. */
+class Leaderboard {
+
+	private static final int NONE = -1;
+
+	private final double[] score;
+	private final int[] left, right, size;
+	private final long[] priority;
+	private int root = NONE;
+
+	// Starts with every entrant on a score of 0.
+	Leaderboard(int numPlayers) {
+		score = new double[numPlayers];
+		left = new int[numPlayers];
+		right = new int[numPlayers];
+		size = new int[numPlayers];
+		priority = new long[numPlayers];
+		for (int which=0; which<numPlayers; which++) {
+			priority[which] = MatchRandom.matchSeed(0x1eadb0a4dL, which, 0, 0);
+			root = insert(root, which);
+		}
+	}
+
+	int size() {
+		return score.length;
+	}
+
+	double score(int which) {
+		return score[which];
+	}
+
+	// Sets the score of an entrant and moves it to its new place.
+	synchronized void update(int which, double newScore) {
+		if (score[which] == newScore)
+			return;
+		root = remove(root, which);
+		score[which] = newScore;
+		root = insert(root, which);
+	}
+
+	// The rank of an entrant, 0 for the leader.
+	synchronized int rank(int which) {
+		int rank = 0;
+		for (int node = root; node != which; ) {
+			if (before(which, node)) {
+				node = left[node];
+			} else {
+				rank += sizeOf(left[node]) + 1;
+				node = right[node];
+			}
+		}
+		return rank + sizeOf(left[which]);
+	}
+
+	// The entrant at the given rank.
+	synchronized int at(int rank) {
+		if (rank < 0 || rank >= score.length)
+			throw new IndexOutOfBoundsException("Rank " + rank + " of " + score.length);
+		int node = root;
+		while (true) {
+			int leftSize = sizeOf(left[node]);
+			if (rank < leftSize) {
+				node = left[node];
+			} else if (rank == leftSize) {
+				return node;
+			} else {
+				rank -= leftSize + 1;
+				node = right[node];
+			}
+		}
+	}
+
+	// The first k entrants in ranking order.
+	synchronized int[] top(int k) {
+		k = Math.min(k, score.length);
+		int[] top = new int[k];
+		int[] path = new int[64];
+		int depth = 0, n = 0;
+		int node = root;
+		while (n < k) {
+			while (node != NONE) {
+				if (depth == path.length)
+					path = Arrays.copyOf(path, 2 * depth);
+				path[depth++] = node;
+				node = left[node];
+			}
+			node = path[--depth];
+			top[n++] = node;
+			node = right[node];
+		}
+		return top;
+	}
+
+	// Whether a ranks ahead of b.
+	private boolean before(int a, int b) {
+		return score[a] > score[b] || (score[a] == score[b] && a < b);
+	}
+
+	private int sizeOf(int node) {
+		return node == NONE ? 0 : size[node];
+	}
+
+	private void resize(int node) {
+		size[node] = sizeOf(left[node]) + sizeOf(right[node]) + 1;
+	}
+
+	private int insert(int node, int which) {
+		if (node == NONE) {
+			left[which] = right[which] = NONE;
+			size[which] = 1;
+			return which;
+		}
+		if (before(which, node)) {
+			left[node] = insert(left[node], which);
+			if (priority[left[node]] > priority[node])
+				node = rotateRight(node);
+		} else {
+			right[node] = insert(right[node], which);
+			if (priority[right[node]] > priority[node])
+				node = rotateLeft(node);
+		}
+		resize(node);
+		return node;
+	}
+
+	private int remove(int node, int which) {
+		if (node == which)
+			return join(left[node], right[node]);
+		if (before(which, node))
+			left[node] = remove(left[node], which);
+		else
+			right[node] = remove(right[node], which);
+		resize(node);
+		return node;
+	}
+
+	// Joins two treaps where everything in a ranks ahead of everything in b.
+	private int join(int a, int b) {
+		if (a == NONE)
+			return b;
+		if (b == NONE)
+			return a;
+		if (priority[a] > priority[b]) {
+			right[a] = join(right[a], b);
+			resize(a);
+			return a;
+		}
+		left[b] = join(a, left[b]);
+		resize(b);
+		return b;
+	}
+
+	private int rotateRight(int node) {
+		int up = left[node];
+		left[node] = right[up];
+		right[up] = node;
+		resize(node);
+		return up;
+	}
+
+	private int rotateLeft(int node) {
+		int up = right[node];
+		right[node] = left[up];
+		left[up] = node;
+		resize(node);
+		return up;
+	}
+}
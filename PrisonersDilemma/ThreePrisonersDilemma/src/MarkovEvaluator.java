@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ MarkovEvaluator works out the expected scores of a match between three
+ memory-one players (see Player.memoryOne) instead of playing it.
+
+ A memory-one player defects with a probability that depends only on the
+ joint moves of the last round, as seen from its seat, so the joint moves of
+ a round are an 8-state Markov chain: the first round comes from the
+ players' opening probabilities, and from joint code s the players move
+ independently, A as seen from (a, b, c), B from (b, c, a) and C from
+ (c, a, b). With pi the distribution of the first round and M the 8 by 8
+ transition matrix, the rounds of a match of R rounds are distributed as
+ pi, pi M, ..., pi M^(R-1), and the expected score of each seat is
+
+	pi (I + M + ... + M^(R-1)) payoffs / R.
+
+ The sum of powers is built by doubling, like a fast power: log2 R steps of
+ a few 8 by 8 matrix products, so a match of a million rounds costs about as
+ much as one of a hundred.
+
+ The result is the mean over every way the match could go, so a tournament
+ scored this way has no luck in it: the ranking is the one an infinitely
+ repeated tournament would converge to, for the round counts drawn. Players
+ of a triple are mostly the same few strategies, so the scores are kept per
+ strategy triple and round count. */
+class MarkovEvaluator {
+
+	private final ConcurrentHashMap<MatchCache.Key, float[]> scores = new ConcurrentHashMap<>();
+
+	// Whether all three players are memory-one.
+	static boolean qualifies(ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B, ThreePrisonersDilemma.Player C) {
+		return A.memoryOne() != null && B.memoryOne() != null && C.memoryOne() != null;
+	}
+
+	// The expected scores of A, B and C in a match of the given number of rounds.
+	float[] expectedScores(ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B,
+			ThreePrisonersDilemma.Player C, int rounds, PayoffTable payoffs) {
+		MatchCache.Key key = new MatchCache.Key(A.strategy(), B.strategy(), C.strategy(), rounds);
+		float[] expected = scores.get(key);
+		if (expected == null) {
+			double[] mean = expectedScores(check(A), check(B), check(C), rounds, payoffs);
+			expected = new float[] {(float) mean[0], (float) mean[1], (float) mean[2]};
+			scores.putIfAbsent(key, expected);
+		}
+		return expected.clone();
+	}
+
+	/* The expected payoff per round of each seat, for players given by their
+	 defect probabilities as in Player.memoryOne. Matrices are 8 by 8, flat,
+	 with [8*from + to] the chance of going from joint code from to to. */
+	static double[] expectedScores(double[] a, double[] b, double[] c, int rounds, PayoffTable payoffs) {
+		double[] first = new double[8];
+		double[] step = new double[64];
+		for (int to=0; to<8; to++) {
+			first[to] = chance(a[8], to >> 2) * chance(b[8], (to >> 1) & 1) * chance(c[8], to & 1);
+			for (int from=0; from<8; from++) {
+				int pa = from >> 2, pb = (from >> 1) & 1, pc = from & 1;
+				step[8*from + to] = chance(a[PayoffTable.code(pa, pb, pc)], to >> 2)
+						* chance(b[PayoffTable.code(pb, pc, pa)], (to >> 1) & 1)
+						* chance(c[PayoffTable.code(pc, pa, pb)], to & 1);
+			}
+		}
+
+		// sum = I + M + ... + M^(n-1) and power = M^n, for n the bits of rounds read so far.
+		double[] sum = new double[64], power = new double[64], product = new double[64];
+		for (int i=0; i<8; i++)
+			power[9*i] = 1;
+		for (int bit=31 - Integer.numberOfLeadingZeros(rounds); bit>=0; bit--) {
+			times(power, sum, product);
+			for (int i=0; i<64; i++)
+				sum[i] += product[i];
+			times(power, power, product);
+			double[] swap = power; power = product; product = swap;
+			if ((rounds >> bit & 1) != 0) {
+				for (int i=0; i<64; i++)
+					sum[i] += power[i];
+				times(power, step, product);
+				swap = power; power = product; product = swap;
+			}
+		}
+
+		double[] expected = new double[3];
+		for (int from=0; from<8; from++)
+			for (int to=0; to<8; to++) {
+				double p = first[from] * sum[8*from + to];
+				for (int seat=0; seat<3; seat++)
+					expected[seat] += p * payoffs.payoff(to, seat);
+			}
+		for (int seat=0; seat<3; seat++)
+			expected[seat] /= rounds;
+		return expected;
+	}
+
+	// The probability of playing move, for a player who defects with probability defect.
+	private static double chance(double defect, int move) {
+		return move == 1 ? defect : 1 - defect;
+	}
+
+	private static double[] check(ThreePrisonersDilemma.Player player) {
+		double[] p = player.memoryOne();
+		if (p.length != 9)
+			throw new IllegalStateException(player.name() + ".memoryOne() must give 9 probabilities, gave " + p.length);
+		for (double q : p)
+			if (!(q >= 0 && q <= 1))
+				throw new IllegalStateException(player.name() + ".memoryOne() gave the probability " + q);
+		return p;
+	}
+
+	// m = x y, where m is neither x nor y.
+	private static void times(double[] x, double[] y, double[] m) {
+		Arrays.fill(m, 0);
+		for (int i=0; i<8; i++)
+			for (int k=0; k<8; k++) {
+				double xik = x[8*i + k];
+				for (int j=0; j<8; j++)
+					m[8*i + j] += xik * y[8*k + j];
+			}
+	}
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ MatchCache remembers the scores of matches between deterministic players.
+
+ When all three players of a match are deterministic (see Player.deterministic),
+ the moves, and so the scores, depend only on which strategies are playing, in
+ which seats, and for how many rounds. The 30 TolerantPlayers and 29
+ NastyPlayers of the default field give thousands of triples that are the
+ same match over and over; with the cache each of them is simulated once per
+ round count.
+ Matches with a stochastic player are never cached, since their outcome
+ depends on the match seed.
+
+ The cache is safe to share between the threads of a ParallelTournament. */
+class MatchCache {
+
+	static final class Key {
+		final Object a, b, c;
+		final int rounds;
+
+		Key(Object a, Object b, Object c, int rounds) {
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.rounds = rounds;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return a == k.a && b == k.b && c == k.c && rounds == k.rounds;
+		}
+
+		public int hashCode() {
+			return ((a.hashCode() * 31 + b.hashCode()) * 31 + c.hashCode()) * 31 + rounds;
+		}
+	}
+
+	// The scores of a match, and its moves once anyone has asked for them.
+	static final class Entry {
+		final float[] scores;
+		final PackedHistory[] moves;
+
+		Entry(float[] scores, PackedHistory[] moves) {
+			this.scores = scores;
+			this.moves = moves;
+		}
+	}
+
+	private final ConcurrentHashMap<Key, Entry> scores = new ConcurrentHashMap<>();
+
+	static boolean cacheable(ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B, ThreePrisonersDilemma.Player C) {
+		return A.deterministic() && B.deterministic() && C.deterministic();
+	}
+
+	/* Returns the scores of A, B and C over the given number of rounds, playing
+	 the match only if these three strategies have not played it before. */
+	float[] scoresOfMatch(ThreePrisonersDilemma game, ThreePrisonersDilemma.Player A,
+			ThreePrisonersDilemma.Player B, ThreePrisonersDilemma.Player C, int rounds) {
+		return scoresOfMatch(game, A, B, C, rounds, null);
+	}
+
+	/* As above, and if moves is not null, also fills it in with a copy of the
+	 moves of the match. A cached match whose moves were not kept is played
+	 again the first time its moves are asked for. */
+	float[] scoresOfMatch(ThreePrisonersDilemma game, ThreePrisonersDilemma.Player A,
+			ThreePrisonersDilemma.Player B, ThreePrisonersDilemma.Player C, int rounds, PackedHistory[] moves) {
+		Key key = new Key(A.strategy(), B.strategy(), C.strategy(), rounds);
+		Entry entry = scores.get(key);
+		if (entry == null || (moves != null && entry.moves == null))
+			entry = scores.compute(key, (k, cached) -> {
+				if (cached != null && (moves == null || cached.moves != null))
+					return cached;
+				PackedHistory[] played = moves != null ? new PackedHistory[3] : null;
+				return new Entry(game.scoresOfMatch(A, B, C, rounds, played), played);
+			});
+		if (moves != null)
+			for (int s=0; s<3; s++)
+				moves[s] = entry.moves[s].copy();
+		return entry.scores.clone();
+	}
+
+	int size() {
+		return scores.size();
+	}
+
+	void clear() {
+		scores.clear();
+	}
+}
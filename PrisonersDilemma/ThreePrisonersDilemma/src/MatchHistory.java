@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+/*
+ MatchHistory holds the plays of the three players in a single match.
+
+ The buffers are allocated once and then reused from match to match (one set
+ per thread), so a match no longer copies every history on every round the way
+ extendIntArray used to. Strategies still receive plain int[] histories through
+ selectAction(n, myHistory, oppHistory1, oppHistory2): only the first n entries
+ are valid, the rest of the buffer is zeroed and must not be relied upon, and
+ none of it may be written to, since all three seats and the cycle detector
+ read the same buffers. Plugins get their own (see PluginLoader).
+
+ When all three players declare a bounded lookback (see Player.lookback), the
+ buffers only need to hold that many rounds, so a match of millions of rounds
+ runs in a fixed amount of memory: once a buffer is full its last window of
+ rounds slides back to the front and n starts counting from there. The packed
+ record in stats slides along, unless the caller wants every move of the
+ match kept. The running counts in stats always cover the whole match. */
+class MatchHistory {
+
+	private static final int INITIAL_CAPACITY = 128;
+
+	// Rounds recorded between two slides of a windowed history. Sliding copies
+	// the window, so this keeps the cost per round to window / SLIDE_INTERVAL.
+	private static final int SLIDE_INTERVAL = 4096;
+
+	// One history per thread, handed out by acquire() and given back by release().
+	private static final ThreadLocal<MatchHistory> pool = ThreadLocal.withInitial(MatchHistory::new);
+
+	int[] historyA = new int[INITIAL_CAPACITY];
+	int[] historyB = new int[INITIAL_CAPACITY];
+	int[] historyC = new int[INITIAL_CAPACITY];
+
+	// Number of rounds held in the buffers, which is the n passed to selectAction.
+	int length;
+
+	// Number of most recent rounds that must be kept when the buffers slide.
+	int window;
+
+	// Running counts of the same plays, updated as each round is recorded.
+	final MatchStats stats = new MatchStats();
+
+	// Scores the rounds the packed record drops when the buffers slide, or
+	// null to keep every round of the match in it.
+	private PayoffTable payoffs;
+
+	private boolean inUse;
+
+	// Made the first time a match of this thread can use it.
+	private CycleDetector cycles;
+
+	/* Returns an empty history for a match of the given number of rounds, where
+	 no player looks further back than window rounds. With payoffs given, the
+	 packed record in stats is windowed along with the buffers, and the rounds
+	 it drops scored with payoffs (see MatchStats.score); without, it keeps the
+	 whole match. If the pooled history of this thread is already taken (a
+	 strategy running a match of its own, say), a fresh one is allocated
+	 instead. */
+	static MatchHistory acquire(int rounds, int window, PayoffTable payoffs) {
+		MatchHistory history = pool.get();
+		if (history.inUse)
+			history = new MatchHistory();
+		history.inUse = true;
+		history.reset(rounds, window);
+		history.payoffs = payoffs;
+		return history;
+	}
+
+	static MatchHistory acquire(int rounds, int window) {
+		return acquire(rounds, window, null);
+	}
+
+	static MatchHistory acquire(int rounds) {
+		return acquire(rounds, ThreePrisonersDilemma.FULL_HISTORY);
+	}
+
+	// The cycle detector of this history, reset for a match with the given lookback.
+	CycleDetector cycles(int lookback) {
+		if (cycles == null)
+			cycles = new CycleDetector();
+		return cycles.reset(lookback);
+	}
+
+	void release() {
+		inUse = false;
+		payoffs = null;
+	}
+
+	void reset(int rounds, int window) {
+		int capacity = (long) window + SLIDE_INTERVAL < rounds ? window + SLIDE_INTERVAL : rounds;
+		if (historyA.length < capacity) {
+			capacity = Math.max(capacity, 2 * historyA.length);
+			historyA = new int[capacity];
+			historyB = new int[capacity];
+			historyC = new int[capacity];
+		} else {
+			// Clear what the previous match left behind.
+			clear(0, length);
+		}
+		length = 0;
+		this.window = window;
+		stats.reset();
+	}
+
+	void record(int playA, int playB, int playC) {
+		if (length == historyA.length)
+			slide();
+		historyA[length] = playA;
+		historyB[length] = playB;
+		historyC[length] = playC;
+		length++;
+		stats.record(playA, playB, playC);
+	}
+
+	// Moves the last window rounds to the front of the buffers.
+	private void slide() {
+		// Keep at least one round, so that n == 0 still means the first round.
+		int keep = Math.max(window, 1);
+		if (keep >= length) {
+			// Nothing to drop: the buffers were sized for fewer rounds than
+			// are being played, so grow them instead.
+			historyA = Arrays.copyOf(historyA, Math.max(2 * length, INITIAL_CAPACITY));
+			historyB = Arrays.copyOf(historyB, Math.max(2 * length, INITIAL_CAPACITY));
+			historyC = Arrays.copyOf(historyC, Math.max(2 * length, INITIAL_CAPACITY));
+			return;
+		}
+		if (payoffs != null)
+			stats.dropBefore(stats.rounds - keep, payoffs);
+		System.arraycopy(historyA, length - keep, historyA, 0, keep);
+		System.arraycopy(historyB, length - keep, historyB, 0, keep);
+		System.arraycopy(historyC, length - keep, historyC, 0, keep);
+		clear(keep, length);
+		length = keep;
+	}
+
+	private void clear(int from, int to) {
+		Arrays.fill(historyA, from, to, 0);
+		Arrays.fill(historyB, from, to, 0);
+		Arrays.fill(historyC, from, to, 0);
+	}
+}
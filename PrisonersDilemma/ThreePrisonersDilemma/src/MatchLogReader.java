@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+ MatchLogReader reads a match log written by MatchLogWriter through memory
+ mapping, so any match can be looked up in constant time through the index and
+ a scan over millions of matches never copies the file into the heap.
+
+ The file is mapped in chunks of up to 1 GB. Consecutive chunks overlap by the
+ size of the largest record, so every record lies whole inside the chunk its
+ first byte falls in.
+
+ Run it as a tool with
+   java MatchLogReader FILE summary [PAYOFFS]  per-strategy totals over every match
+   java MatchLogReader FILE replay M [PAYOFFS] every move of match M and its scores
+ where PAYOFFS optionally replaces the payoff matrix with 8 comma-separated
+ numbers, payoff[0][0][0], payoff[0][0][1], ..., payoff[1][1][1]. */
+class MatchLogReader implements AutoCloseable {
+
+	static final long CHUNK_BYTES = 1L << 30;
+
+	final long seed;
+	final String[] strategies;
+	final int[] strategyOf;      // the strategy id of each entrant
+	final int matches;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] chunks;
+	private final long indexOffset;
+
+	// One match read back from the log.
+	static class Match {
+		int i, j, k, rounds;
+		final PackedHistory[] moves = {new PackedHistory(), new PackedHistory(), new PackedHistory()};
+	}
+
+	MatchLogReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size = channel.size();
+		if (size < MatchLogWriter.TRAILER_BYTES)
+			throw new IOException(file + " is not a match log");
+		MappedByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - MatchLogWriter.TRAILER_BYTES, MatchLogWriter.TRAILER_BYTES);
+		matches = trailer.getInt();
+		int maxRecordBytes = trailer.getInt();
+		indexOffset = trailer.getLong();
+		int version = trailer.getInt();
+		if (trailer.getInt() != MatchLogWriter.MAGIC)
+			throw new IOException(file + " is not a match log");
+		if (version != MatchLogWriter.VERSION)
+			throw new IOException(file + " has version " + version + ", expected " + MatchLogWriter.VERSION);
+
+		int count = (int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+		chunks = new MappedByteBuffer[count];
+		for (int c=0; c<count; c++) {
+			long start = c * CHUNK_BYTES;
+			long length = Math.min(size - start, CHUNK_BYTES + maxRecordBytes);
+			chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+
+		MappedByteBuffer header = chunks[0];
+		header.position(0);
+		if (header.getInt() != MatchLogWriter.MAGIC || header.getInt() != MatchLogWriter.VERSION)
+			throw new IOException(file + " has a damaged header");
+		seed = header.getLong();
+		strategies = new String[header.getInt()];
+		for (int s=0; s<strategies.length; s++) {
+			byte[] bytes = new byte[header.getShort()];
+			header.get(bytes);
+			strategies[s] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		strategyOf = new int[header.getInt()];
+		for (int which=0; which<strategyOf.length; which++)
+			strategyOf[which] = header.getInt();
+	}
+
+	int entrants() {
+		return strategyOf.length;
+	}
+
+	String strategyName(int entrant) {
+		return strategies[strategyOf[entrant]];
+	}
+
+	private long getLong(long offset) {
+		return chunks[(int) (offset / CHUNK_BYTES)].getLong((int) (offset % CHUNK_BYTES));
+	}
+
+	/* Reads match m into the given Match, reusing its buffers, and returns it. */
+	Match read(int m, Match match) {
+		long offset = getLong(indexOffset + 8L * m);
+		MappedByteBuffer chunk = chunks[(int) (offset / CHUNK_BYTES)];
+		int at = (int) (offset % CHUNK_BYTES);
+		match.i = chunk.getInt(at);
+		match.j = chunk.getInt(at + 4);
+		match.k = chunk.getInt(at + 8);
+		match.rounds = chunk.getInt(at + 12);
+		at += 16;
+		int words = MatchLogWriter.words(match.rounds);
+		for (int seat=0; seat<3; seat++) {
+			PackedHistory played = match.moves[seat];
+			if (played.words.length < words)
+				played.words = new long[words];
+			for (int w=0; w<words; w++, at += 8)
+				played.words[w] = chunk.getLong(at);
+			played.length = match.rounds;
+		}
+		return match;
+	}
+
+	// The average payoffs of a match under the given payoffs, as runTournament scores it.
+	static float[] scores(Match match, PayoffTable payoffs) {
+		long[] sums = payoffs.score(match.moves[0], match.moves[1], match.moves[2], 0, match.rounds);
+		float[] result = new float[3];
+		for (int seat=0; seat<3; seat++)
+			result[seat] = (float) ((double) sums[seat] / match.rounds);
+		return result;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/* Adds up, for every strategy, the matches it played, its total score under
+	 the given payoffs and how often it cooperated, and prints them. */
+	void printSummary(PayoffTable payoffs) {
+		int numStrategies = strategies.length;
+		long[] played = new long[numStrategies];
+		double[] totalScore = new double[numStrategies];
+		long[] rounds = new long[numStrategies];
+		long[] coops = new long[numStrategies];
+		Match match = new Match();
+		for (int m=0; m<matches; m++) {
+			read(m, match);
+			float[] result = scores(match, payoffs);
+			int[] seats = {match.i, match.j, match.k};
+			for (int seat=0; seat<3; seat++) {
+				int s = strategyOf[seats[seat]];
+				played[s]++;
+				totalScore[s] += result[seat];
+				rounds[s] += match.rounds;
+				coops[s] += match.moves[seat].coops(0, match.rounds);
+			}
+		}
+		System.out.println(matches + " matches between " + entrants() + " entrants (seed " + seed + ")");
+		System.out.println("strategy\tseats\tmean score\tcooperation");
+		for (int s=0; s<numStrategies; s++) {
+			if (played[s] == 0)
+				continue;
+			System.out.printf("%s\t%d\t%.4f\t%.4f%n", strategies[s], played[s],
+					totalScore[s] / played[s], (double) coops[s] / rounds[s]);
+		}
+	}
+
+	void printReplay(int m, PayoffTable payoffs) {
+		Match match = read(m, new Match());
+		float[] result = scores(match, payoffs);
+		int[] seats = {match.i, match.j, match.k};
+		System.out.println("Match " + m + ", " + match.rounds + " rounds (C cooperates, D defects)");
+		for (int seat=0; seat<3; seat++) {
+			StringBuilder line = new StringBuilder();
+			line.append(seats[seat]).append(' ').append(strategyName(seats[seat])).append(": ");
+			for (int r=0; r<match.rounds; r++)
+				line.append(match.moves[seat].get(r) == 0 ? 'C' : 'D');
+			line.append(" scored ").append(result[seat]).append(" points.");
+			System.out.println(line);
+		}
+	}
+
+	static PayoffTable parsePayoffs(String list) {
+		String[] values = list.split(",");
+		if (values.length != 8)
+			throw new IllegalArgumentException("Expected 8 payoffs, got " + values.length);
+		int[][][] payoff = new int[2][2][2];
+		for (int v=0; v<8; v++)
+			payoff[v >> 2][(v >> 1) & 1][v & 1] = Integer.parseInt(values[v].trim());
+		return PayoffTable.of(payoff);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("usage: java MatchLogReader FILE summary [PAYOFFS] | FILE replay M [PAYOFFS]");
+			return;
+		}
+		try (MatchLogReader log = new MatchLogReader(Paths.get(args[0]))) {
+			if (args[1].equals("summary")) {
+				log.printSummary(args.length > 2 ? parsePayoffs(args[2]) : ThreePrisonersDilemma.payoffTable);
+			} else if (args[1].equals("replay") && args.length > 2) {
+				log.printReplay(Integer.parseInt(args[2]), args.length > 3 ? parsePayoffs(args[3]) : ThreePrisonersDilemma.payoffTable);
+			} else {
+				System.out.println("Unknown command " + args[1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ MatchLogWriter keeps every move of every match of a tournament in a compact
+ binary file, which MatchLogReader can replay and query later without running
+ the tournament again. All values are big-endian.
+
+ Header:
+   int    MAGIC ("PDML"), int VERSION, long seed
+   int    number of strategies, then each name as a short length and UTF-8 bytes
+   int    number of entrants, then the strategy id of each entrant
+ Records, one per match, in the order the tournament played them:
+   int    i, j, k (the entrants in seats A, B and C), int rounds
+   long[] the moves of A, then of B, then of C, one bit per round
+          (1 is defect), (rounds + 63) / 64 words each
+ Index:
+   long[] the file offset of each record
+ Trailer (the last 24 bytes):
+   int    number of matches, int size of the largest record in bytes,
+   long   offset of the index, int VERSION, int MAGIC
+
+ A writer has a single producer: only one thread may call write(). */
+class MatchLogWriter implements AutoCloseable {
+
+	static final int MAGIC = 0x50444d4c;
+	static final int VERSION = 1;
+	static final int TRAILER_BYTES = 24;
+
+	private final DataOutputStream out;
+	private long position;
+	private long[] offsets = new long[1024];
+	private int matches;
+	private int maxRecordBytes;
+
+	/* names holds the strategy name of each entrant; entrants with the same
+	 name share a strategy id. */
+	MatchLogWriter(OutputStream out, long seed, String[] names) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		Map<String, Integer> ids = new LinkedHashMap<>();
+		int[] strategyOf = new int[names.length];
+		for (int which=0; which<names.length; which++) {
+			Integer id = ids.get(names[which]);
+			if (id == null) {
+				id = ids.size();
+				ids.put(names[which], id);
+			}
+			strategyOf[which] = id;
+		}
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+			this.out.writeLong(seed);
+			this.out.writeInt(ids.size());
+			for (String name : ids.keySet()) {
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				this.out.writeShort(bytes.length);
+				this.out.write(bytes);
+			}
+			this.out.writeInt(names.length);
+			for (int id : strategyOf)
+				this.out.writeInt(id);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the match log", e);
+		}
+		position = this.out.size();
+	}
+
+	static int words(int rounds) {
+		return (rounds + 63) >>> 6;
+	}
+
+	void write(int i, int j, int k, int rounds, PackedHistory[] moves) {
+		if (matches == offsets.length)
+			offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+		offsets[matches++] = position;
+		int words = words(rounds);
+		int bytes = 16 + 3 * 8 * words;
+		maxRecordBytes = Math.max(maxRecordBytes, bytes);
+		try {
+			out.writeInt(i);
+			out.writeInt(j);
+			out.writeInt(k);
+			out.writeInt(rounds);
+			for (int seat=0; seat<3; seat++) {
+				long[] played = moves[seat].words;
+				for (int w=0; w<words; w++)
+					out.writeLong(played[w]);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the match log", e);
+		}
+		position += bytes;
+	}
+
+	// Writes the index and trailer, and closes the file.
+	public void close() {
+		try {
+			long indexOffset = position;
+			for (int m=0; m<matches; m++)
+				out.writeLong(offsets[m]);
+			out.writeInt(matches);
+			out.writeInt(maxRecordBytes);
+			out.writeLong(indexOffset);
+			out.writeInt(VERSION);
+			out.writeInt(MAGIC);
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the match log", e);
+		}
+	}
+}
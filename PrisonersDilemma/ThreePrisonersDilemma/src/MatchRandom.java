@@ -0,0 +1,63 @@
+import java.util.SplittableRandom;
+
+/*
+ MatchRandom is where players and the tournament get their random numbers,
+ instead of the single synchronized generator behind Math.random().
+
+ Every match (i, j, k) gets its own generator, seeded from the tournament seed
+ and the indices of the triple; the tournament draws the number of rounds from
+ it. Each seat of the match gets a stream of its own as well, derived from the
+ match seed and the seat, which the player created for that seat takes when it
+ is constructed. It does not matter which thread plays a match, in what order,
+ or whether the other seats were given fresh or reused players: the same seed
+ always gives the same draws. */
+class MatchRandom {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// Per thread: the seed of the match being played, and the seed of the next
+	// player stream to hand out. Outside of a match (a player made just to
+	// print its name, say) they are randomly seeded.
+	private static final class State {
+		long matchSeed = new SplittableRandom().nextLong();
+		long playerSeed = matchSeed;
+	}
+
+	private static final ThreadLocal<State> current = ThreadLocal.withInitial(State::new);
+
+	// Starts match (i, j, k) on this thread and returns its generator.
+	static SplittableRandom beginMatch(long seed, int i, int j, int k) {
+		State state = current.get();
+		state.matchSeed = matchSeed(seed, i, j, k);
+		state.playerSeed = mix(state.matchSeed);
+		return new SplittableRandom(state.matchSeed);
+	}
+
+	// The next player created on this thread will sit in the given seat.
+	static void beginSeat(int seat) {
+		State state = current.get();
+		state.playerSeed = mix(state.matchSeed + GOLDEN_GAMMA * (seat + 1));
+	}
+
+	// Returns the stream of the next player created on this thread.
+	static SplittableRandom split() {
+		State state = current.get();
+		SplittableRandom random = new SplittableRandom(state.playerSeed);
+		// Players made without a beginSeat in between still get different streams.
+		state.playerSeed = mix(state.playerSeed + GOLDEN_GAMMA);
+		return random;
+	}
+
+	static long matchSeed(long seed, int i, int j, int k) {
+		long h = mix(seed + GOLDEN_GAMMA * (i + 1));
+		h = mix(h + GOLDEN_GAMMA * (j + 1));
+		return mix(h + GOLDEN_GAMMA * (k + 1));
+	}
+
+	// The SplitMix64 finalizer.
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
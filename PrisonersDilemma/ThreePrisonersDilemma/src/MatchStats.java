@@ -0,0 +1,175 @@
+/*
+ MatchStats keeps running statistics of a match: how often each player has
+ cooperated and defected, their last move and how long they have kept playing
+ it, and how often each pair of players cooperated or defected together.
+
+ The engine updates it once per round, so a strategy that only needs counts
+ can read them in constant time instead of rescanning the whole history on
+ every call to selectAction. Each player sees the match through a View taken
+ from its own seat, where 0 is the player itself and 1 and 2 are its first and
+ second opponent, in the same order as oppHistory1 and oppHistory2.
+
+ It also keeps the plays of the match, one bit per round (see PackedHistory),
+ for queries the counts do not answer, such as how often the two opponents
+ agreed over the last ten rounds, and for scoring the match. It costs 1/32 of
+ the memory of an int[] history, and when the histories of a long match are
+ windowed (see MatchHistory) it can follow the window too: the rounds it
+ drops are scored first, and their scores kept in dropped. */
+class MatchStats {
+
+	// Indexed by seat: 0 is player A, 1 is player B and 2 is player C.
+	final int[] coops = new int[3];
+	final int[] defects = new int[3];
+	final int[] lastMove = new int[3];
+	final int[] streak = new int[3];
+
+	// Indexed by a pair of seats, kept symmetric.
+	final int[][] bothCooperated = new int[3][3];
+	final int[][] bothDefected = new int[3][3];
+
+	// The plays of each seat, from histories[0].first() on.
+	final PackedHistory[] histories = {new PackedHistory(), new PackedHistory(), new PackedHistory()};
+
+	// The scores of A, B and C over the rounds dropped from histories.
+	final long[] dropped = new long[3];
+
+	int rounds;
+
+	final View[] views = {new View(0), new View(1), new View(2)};
+
+	void reset() {
+		rounds = 0;
+		for (int s=0; s<3; s++) {
+			coops[s] = 0;
+			defects[s] = 0;
+			lastMove[s] = 0;
+			streak[s] = 0;
+			histories[s].clear();
+			dropped[s] = 0;
+			for (int t=0; t<3; t++) {
+				bothCooperated[s][t] = 0;
+				bothDefected[s][t] = 0;
+			}
+		}
+	}
+
+	void record(int playA, int playB, int playC) {
+		update(0, playA);
+		update(1, playB);
+		update(2, playC);
+		updatePair(0, 1, playA, playB);
+		updatePair(1, 2, playB, playC);
+		updatePair(0, 2, playA, playC);
+		rounds++;
+	}
+
+	private void update(int seat, int play) {
+		if (play == 0)
+			coops[seat]++;
+		else
+			defects[seat]++;
+		if (rounds > 0 && lastMove[seat] == play)
+			streak[seat]++;
+		else
+			streak[seat] = 1;
+		lastMove[seat] = play;
+		histories[seat].append(play);
+	}
+
+	private void updatePair(int s, int t, int playS, int playT) {
+		if (playS == playT) {
+			int[][] together = playS == 0 ? bothCooperated : bothDefected;
+			together[s][t]++;
+			together[t][s]++;
+		}
+	}
+
+	// Scores the rounds before round into dropped, then drops them from histories.
+	void dropBefore(int round, PayoffTable payoffs) {
+		int first = histories[0].first(), to = round & -64;
+		if (to <= first)
+			return;
+		long[] scores = payoffs.score(histories[0], histories[1], histories[2], first, to);
+		for (int s=0; s<3; s++) {
+			dropped[s] += scores[s];
+			histories[s].dropBefore(to);
+		}
+	}
+
+	// The scores of A, B and C over the first rounds rounds, dropped ones included.
+	long[] score(PayoffTable payoffs, int rounds) {
+		long[] scores = payoffs.score(histories[0], histories[1], histories[2], histories[0].first(), rounds);
+		for (int s=0; s<3; s++)
+			scores[s] += dropped[s];
+		return scores;
+	}
+
+	/* Builds the statistics of the first n rounds of the given histories, for
+	 callers that run selectAction outside of scoresOfMatch. */
+	static MatchStats of(int n, int[] historyA, int[] historyB, int[] historyC) {
+		MatchStats stats = new MatchStats();
+		for (int i=0; i<n; i++)
+			stats.record(historyA[i], historyB[i], historyC[i]);
+		return stats;
+	}
+
+	View view(int seat) {
+		return views[seat];
+	}
+
+	/* The statistics as seen from one seat. "who" is 0 for the player itself,
+	 1 for its first opponent and 2 for its second. */
+	class View {
+		final int seat;
+
+		View(int seat) {
+			this.seat = seat;
+		}
+
+		private int seatOf(int who) {
+			return (seat + who) % 3;
+		}
+
+		int rounds() {
+			return rounds;
+		}
+
+		int coops(int who) {
+			return coops[seatOf(who)];
+		}
+
+		int defects(int who) {
+			return defects[seatOf(who)];
+		}
+
+		// Only meaningful once rounds() > 0.
+		int lastMove(int who) {
+			return lastMove[seatOf(who)];
+		}
+
+		// Number of rounds in a row, up to the last one, that who played lastMove(who).
+		int streak(int who) {
+			return streak[seatOf(who)];
+		}
+
+		int bothCooperated(int who1, int who2) {
+			return bothCooperated[seatOf(who1)][seatOf(who2)];
+		}
+
+		int bothDefected(int who1, int who2) {
+			return bothDefected[seatOf(who1)][seatOf(who2)];
+		}
+
+		// Number of rounds in which the two played the same move.
+		int agreements(int who1, int who2) {
+			return bothCooperated(who1, who2) + bothDefected(who1, who2);
+		}
+
+		// The plays of who in this match, indexed by round up to rounds()-1: every
+		// round unless the histories are windowed, and always at least the
+		// rounds the histories hold, from history(who).first() on.
+		PackedHistory history(int who) {
+			return histories[seatOf(who)];
+		}
+	}
+}
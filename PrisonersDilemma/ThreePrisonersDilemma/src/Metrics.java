@@ -0,0 +1,282 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ Metrics watches a tournament while it runs: matches and rounds per second,
+ progress and time to go, the allocation rate of the JVM, and how long each
+ strategy takes in selectAction.
+
+ Everything on the hot path is cheap and never contended. Matches and rounds
+ go into LongAdders, which spread concurrent increments over cells. The
+ selectAction calls of one round in every TIMED_ROUNDS are timed with
+ System.nanoTime, and each time goes into a histogram of its strategy owned by
+ the playing thread, with one bucket per power of two nanoseconds. Only
+ that thread writes its histogram, so the buckets are never contended, but
+ they are atomic so that readers, which add up the buckets of every thread
+ when asked, see whole counts while it plays. Without a Metrics set on the
+ game nothing is counted at all.
+
+ The numbers can be printed to stderr every so many seconds, so they do not
+ mix with the results on stdout, or read over JMX as
+ "ThreePrisonersDilemma:type=Metrics" between registerMBean() and
+ unregisterMBean(). */
+class Metrics implements MetricsMBean {
+
+	// One round in this many has its selectAction calls timed.
+	static final int TIMED_ROUNDS = 64;
+
+	private static final int BUCKETS = 64;
+
+	private final LongAdder matches = new LongAdder();
+	private final LongAdder rounds = new LongAdder();
+	private volatile long expectedMatches;
+	private volatile long startTime = System.nanoTime();
+
+	// The histogram slot of each strategy, by Player.strategy(), and its name.
+	private final ConcurrentHashMap<Object, Integer> slots = new ConcurrentHashMap<>();
+	private final List<String> strategies = new CopyOnWriteArrayList<>();
+
+	// The histograms of every thread that has timed a call.
+	private final List<Timer> timers = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Timer> timer = ThreadLocal.withInitial(this::newTimer);
+
+	private ScheduledExecutorService reporter;
+	private ObjectName mbeanName;
+	private long lastReportTime, lastReportAllocated, beginAllocated;
+
+	// The bytes each thread had allocated when last looked at, by thread id,
+	// and those of threads that have ended since (see allocatedBytes).
+	private final Map<Long, Long> threadAllocated = new HashMap<>();
+	private long endedAllocated;
+
+	// The selectAction times of one thread, buckets[slot][b] counting the calls
+	// that took from 2^(b-1) up to 2^b nanoseconds.
+	// The array of slots is replaced, never changed, when it grows.
+	static final class Timer {
+		volatile AtomicLongArray[] buckets = new AtomicLongArray[0];
+
+		void record(int slot, long nanos) {
+			AtomicLongArray[] b = buckets;
+			if (slot >= b.length) {
+				AtomicLongArray[] grown = Arrays.copyOf(b, Math.max(slot + 1, 2 * b.length));
+				for (int s=b.length; s<grown.length; s++)
+					grown[s] = new AtomicLongArray(BUCKETS);
+				buckets = b = grown;
+			}
+			b[slot].incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+		}
+	}
+
+	private Timer newTimer() {
+		Timer t = new Timer();
+		timers.add(t);
+		return t;
+	}
+
+	// The histograms of the calling thread.
+	Timer timer() {
+		return timer.get();
+	}
+
+	// The histogram slot of a player's strategy.
+	int slot(ThreePrisonersDilemma.Player player) {
+		Integer slot = slots.get(player.strategy());
+		return slot != null ? slot : register(player);
+	}
+
+	private synchronized int register(ThreePrisonersDilemma.Player player) {
+		Integer slot = slots.get(player.strategy());
+		if (slot == null) {
+			slot = strategies.size();
+			strategies.add(player.name());
+			slots.put(player.strategy(), slot);
+		}
+		return slot;
+	}
+
+	void matchPlayed(int matchRounds) {
+		matches.increment();
+		rounds.add(matchRounds);
+	}
+
+	// Starts the clock on a tournament of the given number of matches.
+	void begin(long expectedMatches) {
+		matches.reset();
+		rounds.reset();
+		this.expectedMatches = expectedMatches;
+		startTime = System.nanoTime();
+		lastReportTime = startTime;
+		lastReportAllocated = beginAllocated = allocatedBytes();
+	}
+
+	// Prints a line to stderr every period seconds until end().
+	synchronized void startReporting(double period) {
+		reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		long millis = Math.max(1, (long) (period * 1000));
+		reporter.scheduleAtFixedRate(() -> System.err.println(line()), millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	// Stops reporting, and prints a last line and the selectAction times if it was.
+	synchronized void end() {
+		if (reporter == null)
+			return;
+		reporter.shutdownNow();
+		reporter = null;
+		System.err.println(line());
+		for (String times : getActionTimes())
+			System.err.println(times);
+	}
+
+	synchronized void registerMBean() {
+		try {
+			ObjectName name = new ObjectName("ThreePrisonersDilemma:type=Metrics");
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			mbeanName = name;
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register the metrics MBean", e);
+		}
+	}
+
+	// Takes the MBean out again, so that the next run can register its own.
+	synchronized void unregisterMBean() {
+		if (mbeanName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not unregister the metrics MBean", e);
+		} finally {
+			mbeanName = null;
+		}
+	}
+
+	// One progress line; also the allocation rate since the last one.
+	synchronized String line() {
+		long now = System.nanoTime();
+		long allocated = allocatedBytes();
+		String allocation = "n/a";
+		if (allocated >= 0 && now > lastReportTime)
+			allocation = String.format("%.1f MB/s", (allocated - lastReportAllocated) * 1e3 / (now - lastReportTime));
+		lastReportTime = now;
+		lastReportAllocated = allocated;
+		return String.format("%d/%d matches (%.1f%%), %.0f matches/s, %.0f rounds/s, allocating %s, ETA %.1f s",
+				getMatches(), expectedMatches, 100 * getProgress(), getMatchesPerSecond(), getRoundsPerSecond(),
+				allocation, getEtaSeconds());
+	}
+
+	private double seconds() {
+		return Math.max(System.nanoTime() - startTime, 1) / 1e9;
+	}
+
+	public long getMatches() {
+		return matches.sum();
+	}
+
+	public long getRounds() {
+		return rounds.sum();
+	}
+
+	public double getMatchesPerSecond() {
+		return getMatches() / seconds();
+	}
+
+	public double getRoundsPerSecond() {
+		return getRounds() / seconds();
+	}
+
+	public double getProgress() {
+		long expected = expectedMatches;
+		return expected == 0 ? 0 : Math.min(1.0, (double) getMatches() / expected);
+	}
+
+	public double getEtaSeconds() {
+		long played = getMatches();
+		if (played == 0)
+			return Double.POSITIVE_INFINITY;
+		return Math.max(0, expectedMatches - played) / getMatchesPerSecond();
+	}
+
+	public double getAllocatedBytesPerSecond() {
+		long allocated = allocatedBytes();
+		return allocated < 0 ? -1 : (allocated - beginAllocated) / seconds();
+	}
+
+	public String[] getActionTimes() {
+		List<String> lines = new ArrayList<>();
+		for (int slot=0; slot<strategies.size(); slot++) {
+			long[] total = new long[BUCKETS];
+			for (Timer t : timers) {
+				AtomicLongArray[] b = t.buckets;
+				if (slot < b.length)
+					for (int i=0; i<BUCKETS; i++)
+						total[i] += b[slot].get(i);
+			}
+			long calls = 0;
+			for (long count : total)
+				calls += count;
+			if (calls == 0)
+				continue;
+			lines.add(String.format("%s selectAction: %d timed calls, p50 < %d ns, p99 < %d ns",
+					strategies.get(slot), calls, quantile(total, calls, 0.5), quantile(total, calls, 0.99)));
+		}
+		return lines.toArray(new String[0]);
+	}
+
+	// The upper bound of the bucket the q-quantile falls in.
+	private static long quantile(long[] buckets, long calls, double q) {
+		long rank = (long) Math.ceil(q * calls), seen = 0;
+		for (int b=0; b<BUCKETS; b++) {
+			seen += buckets[b];
+			if (seen >= rank)
+				return b == 0 ? 1 : 1L << Math.min(b, 62);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/* The bytes allocated so far by every thread, or -1 if the JVM cannot
+	 tell. The JVM only counts live threads, so the last count of each thread
+	 is kept, and added to endedAllocated once the thread is gone; the total
+	 then never goes down when a pool shuts down. What a thread allocated
+	 after it was last looked at is missed. */
+	synchronized long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long[] ids = threads.getAllThreadIds();
+		long[] allocated = hotspot.getThreadAllocatedBytes(ids);
+		Map<Long, Long> live = new HashMap<>();
+		long total = 0;
+		for (int t=0; t<ids.length; t++)
+			if (allocated[t] > 0) {
+				live.put(ids[t], allocated[t]);
+				total += allocated[t];
+			}
+		for (Map.Entry<Long, Long> e : threadAllocated.entrySet())
+			if (!live.containsKey(e.getKey()))
+				endedAllocated += e.getValue();
+		threadAllocated.clear();
+		threadAllocated.putAll(live);
+		return endedAllocated + total;
+	}
+}
@@ -0,0 +1,26 @@
+/*
+ What Metrics shows over JMX, for jconsole or any other JMX client. The
+ interface has to be public and named after the class for JMX to find it. */
+public interface MetricsMBean {
+
+	long getMatches();
+
+	long getRounds();
+
+	// Since the tournament started.
+	double getMatchesPerSecond();
+
+	double getRoundsPerSecond();
+
+	// The fraction of the tournament's matches played so far, from 0 to 1.
+	double getProgress();
+
+	double getEtaSeconds();
+
+	// Bytes allocated per second by all threads, or -1 if the JVM cannot tell.
+	double getAllocatedBytesPerSecond();
+
+	// One line per strategy with the median and 99th percentile of its
+	// selectAction times.
+	String[] getActionTimes();
+}
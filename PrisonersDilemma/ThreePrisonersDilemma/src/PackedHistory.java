@@ -0,0 +1,134 @@
+import java.util.Arrays;
+
+/*
+ PackedHistory is the plays of one player stored one bit per round, 64 rounds
+ to a long, with the same encoding as everywhere else: 0 for cooperate and 1
+ for defect. That is 32 times smaller than an int[] history, and counting over
+ a range of rounds becomes a handful of Long.bitCount calls instead of a loop
+ over every round.
+
+ Ranges are given as [from, to), so defects(0, length()) covers the whole
+ history and agreements(other, n-1, n) compares just the last round.
+
+ A history can drop its oldest rounds, a word of 64 at a time, to follow a
+ window of a long match (see dropBefore). Rounds keep their numbers; only
+ those from first() on can still be read. */
+class PackedHistory {
+
+	private static final int SELF = 0, AND = 1, OR = 2, XOR = 3;
+
+	long[] words = new long[2];
+	int length;
+
+	// Number of words dropped from the front: words[0] holds rounds 64 * base on.
+	int base;
+
+	int length() {
+		return length;
+	}
+
+	// The first round that is still kept.
+	int first() {
+		return base << 6;
+	}
+
+	void clear() {
+		Arrays.fill(words, 0, used(), 0L);
+		length = 0;
+		base = 0;
+	}
+
+	private int used() {
+		return ((length + 63) >>> 6) - base;
+	}
+
+	// Drops the words that only hold rounds before round.
+	void dropBefore(int round) {
+		int drop = Math.min((round >>> 6) - base, used());
+		if (drop <= 0)
+			return;
+		int used = used();
+		System.arraycopy(words, drop, words, 0, used - drop);
+		Arrays.fill(words, used - drop, used, 0L);
+		base += drop;
+	}
+
+	void append(int play) {
+		int word = (length >>> 6) - base;
+		if (word == words.length)
+			words = Arrays.copyOf(words, 2 * words.length);
+		if (play != 0)
+			words[word] |= 1L << (length & 63);
+		length++;
+	}
+
+	int get(int round) {
+		return (int) (words[(round >>> 6) - base] >>> (round & 63)) & 1;
+	}
+
+	int defects(int from, int to) {
+		return count(this, SELF, from, to);
+	}
+
+	int coops(int from, int to) {
+		return (to - from) - defects(from, to);
+	}
+
+	// Rounds in [from, to) where both players made the same move.
+	int agreements(PackedHistory other, int from, int to) {
+		return (to - from) - count(other, XOR, from, to);
+	}
+
+	int bothDefected(PackedHistory other, int from, int to) {
+		return count(other, AND, from, to);
+	}
+
+	int bothCooperated(PackedHistory other, int from, int to) {
+		return (to - from) - count(other, OR, from, to);
+	}
+
+	// Counts the set bits in [from, to) of this history combined with other.
+	private int count(PackedHistory other, int op, int from, int to) {
+		if (from >= to)
+			return 0;
+		int first = from >>> 6, last = (to - 1) >>> 6;
+		int count = 0;
+		for (int w=first; w<=last; w++) {
+			long bits = words[w - base];
+			switch (op) {
+			case AND: bits &= other.words[w - other.base]; break;
+			case OR: bits |= other.words[w - other.base]; break;
+			case XOR: bits ^= other.words[w - other.base]; break;
+			}
+			if (w == first)
+				bits &= -1L << (from & 63);
+			if (w == last)
+				bits &= -1L >>> (63 - ((to - 1) & 63));
+			count += Long.bitCount(bits);
+		}
+		return count;
+	}
+
+	// Packs the first n entries of an int[] history.
+	static PackedHistory of(int[] history, int n) {
+		PackedHistory packed = new PackedHistory();
+		for (int i=0; i<n; i++)
+			packed.append(history[i]);
+		return packed;
+	}
+
+	// A copy that keeps just the words in use.
+	PackedHistory copy() {
+		PackedHistory copy = new PackedHistory();
+		copy.words = Arrays.copyOf(words, Math.max(used(), 1));
+		copy.length = length;
+		copy.base = base;
+		return copy;
+	}
+
+	// Unpacks rounds [from, to) into dest, starting at dest[0].
+	void unpack(int from, int to, int[] dest) {
+		for (int i=from; i<to; i++)
+			dest[i - from] = get(i);
+	}
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ ParallelTournament plays the same (i <= j <= k) triples as runTournament, but
+ spreads them over a pool of worker threads.
+
+ The work is partitioned by the first index: row i holds every match (i, j, k)
+ with i <= j <= k. Rows are submitted largest first (row 0 has the most
+ matches), so the pool stays balanced without any further splitting. Each row
+ keeps its own buffer of match scores instead of touching the shared totals,
+ and the buffers are merged in the order the sequential loop would have
+ played them, each as soon as the rows before it are in. Only ROWS_AHEAD rows
+ per thread are submitted ahead of the next to merge, so at most that many
+ buffers, with their moves when a move log is kept, are held at a time
+ however large the field. As every match draws its randomness from its own
+ seeded stream (see MatchRandom), the ScoreBoard comes out exactly the same as
+ the sequential loop for the same seed, rounding included. */
+class ParallelTournament {
+
+	// Rows per thread that may be played or waiting ahead of the next row to merge.
+	static final int ROWS_AHEAD = 4;
+
+	final ThreePrisonersDilemma game;
+	final int threads;
+
+	ParallelTournament(ThreePrisonersDilemma game, int threads) {
+		this.game = game;
+		this.threads = threads;
+	}
+
+	// The scores of every match in one row, three per match, in (j, k) order,
+	// and their moves when the tournament keeps a move log.
+	static class Row {
+		final float[] scores;
+		final int[] rounds;
+		final PackedHistory[][] moves;
+
+		Row(int matches, boolean keepMoves) {
+			scores = new float[3 * matches];
+			rounds = new int[matches];
+			moves = keepMoves ? new PackedHistory[matches][] : null;
+		}
+	}
+
+	ScoreBoard play() {
+		int numPlayers = game.numPlayers;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		// The rows submitted and not yet merged, in order, row i first.
+		Deque<Future<Row>> rows = new ArrayDeque<>();
+		int ahead = ROWS_AHEAD * threads;
+		if (game.matchCache != null)
+			game.matchCache.clear();
+		try {
+			int submitted = 0;
+			ScoreBoard scores = game.newScoreBoard();
+			for (int i=0; i<numPlayers; i++) {
+				for (; submitted<numPlayers && submitted<i+ahead; submitted++) {
+					final int row = submitted;
+					rows.add(pool.submit(() -> playRow(row)));
+				}
+				merge(i, rows.remove().get(), scores);
+			}
+			return scores;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Tournament interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	Row playRow(int i) {
+		int numPlayers = game.numPlayers;
+		int remaining = numPlayers - i;
+		Row row = new Row(remaining * (remaining + 1) / 2, game.moveLog != null);
+		PlayerPool players = new PlayerPool(game);
+		int m = 0;
+		for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			SplittableRandom random = MatchRandom.beginMatch(game.seed, i, j, k);
+			int rounds = game.roundsOfMatch(random);
+			ThreePrisonersDilemma.Player A = players.player(0, i);
+			ThreePrisonersDilemma.Player B = players.player(1, j);
+			ThreePrisonersDilemma.Player C = players.player(2, k);
+			PackedHistory[] moves = row.moves != null ? new PackedHistory[3] : null;
+			float[] matchResults = game.playMatch(A, B, C, rounds, moves);
+			if (row.moves != null)
+				row.moves[m] = moves;
+			row.scores[3*m] = matchResults[0];
+			row.scores[3*m+1] = matchResults[1];
+			row.scores[3*m+2] = matchResults[2];
+			row.rounds[m] = rounds;
+			m++;
+		}
+		return row;
+	}
+
+	// Adds one row to the totals in the same order as the sequential loop.
+	void merge(int i, Row row, ScoreBoard scores) {
+		int numPlayers = game.numPlayers;
+		float[] matchResults = new float[3];
+		int m = 0;
+		for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			matchResults[0] = row.scores[3*m];
+			matchResults[1] = row.scores[3*m+1];
+			matchResults[2] = row.scores[3*m+2];
+			scores.match(i, j, k, matchResults);
+			if (game.results != null)
+				game.results.match(i, j, k, row.rounds[m], matchResults);
+			if (row.moves != null)
+				game.moveLog.write(i, j, k, row.rounds[m], row.moves[m]);
+			m++;
+		}
+	}
+
+	/* Times the sequential tournament against the parallel one on 1, 2, 4, ...
+	 threads up to the number of cores, and prints the speedup of each along with
+	 whether the scores were identical. */
+	public static void main(String[] args) {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		game.playTournament(); // warm up the JIT before timing anything
+		long start = System.nanoTime();
+		double[] expected = game.playTournament().totals();
+		long sequential = System.nanoTime() - start;
+		System.out.println("cores: " + cores);
+		System.out.println("sequential: " + sequential / 1000000 + " ms");
+
+		for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+			start = System.nanoTime();
+			double[] totalScore = new ParallelTournament(game, threads).play().totals();
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("%d threads: %d ms, speedup %.2fx, identical: %b%n",
+					threads, elapsed / 1000000, (double) sequential / elapsed, Arrays.equals(expected, totalScore));
+			if (threads == cores)
+				break;
+		}
+	}
+}
@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ ParameterSearch tunes the thresholds of ThresholdPlayer, the parameterized
+ RX, for the field of ThreePrisonersDilemma: each candidate parameter set
+ takes the place of entrant 0, your player, and is scored and ranked as the
+ tournament would score and rank it.
+
+ Only entrant 0 changes from one candidate to the next, so the matches
+ between the other entrants, all but a few percent of the tournament, are
+ played once up front and their totals kept. A candidate then only plays the
+ matches it takes part in, (0, j, k) for every j <= k, with the match seeds
+ and round counts of runTournament; its own scores give its mean and spread,
+ and the other entrants' scores in them, added to the kept totals, give its
+ rank. Matches with deterministic opponents are played once per round count
+ and candidate (MatchCache).
+
+ The search is evolutionary. The first generation is RX and RX2, as
+ parameter sets that play exactly like them, and random parameter sets;
+ every later one is mutants of the best quarter found so far, each with one
+ parameter changed (see Params.mutate). Candidates of a generation are
+ scored on several threads, one candidate per task. RX, RX2 and RX3
+ themselves are scored too, as the incumbents to beat; RX3 is not a
+ parameter set, so it only takes part as that. */
+class ParameterSearch {
+
+	final ThreePrisonersDilemma game;
+	final int threads;
+
+	int population = 64;  // candidates scored per generation
+	int generations = 10; // generations of mutants after the first one
+	int step = 10;        // the most a mutation moves a threshold, in percent
+
+	// The totals and match counts of every entrant over the matches entrant 0
+	// does not play in.
+	double[] background;
+	long[] backgroundMatches;
+
+	// RX and RX2 as parameter sets (with RX's truncated shares), to start from.
+	static final String[] PRESETS = {"RXT:0:51:85:66:90:1:1", "RXT:1:51:85:66:35:0:1"};
+
+	// The strategies the search has to beat.
+	static final String[] INCUMBENTS = {"RX", "RX2", "RX3"};
+
+	/* How a candidate did as entrant 0: its score in each match it played, and
+	 its rank in the tournament, 1 for the winner. A match with the candidate
+	 in two seats counts twice, as in the tournament. */
+	static final class Evaluation {
+		final String name;
+		final double[] scores;  // sorted
+		final double mean, sd;
+		final int rank;
+
+		Evaluation(String name, double[] scores, int rank) {
+			this.name = name;
+			this.scores = scores;
+			Arrays.sort(scores);
+			double sum = 0;
+			for (double score : scores)
+				sum += score;
+			mean = sum / scores.length;
+			double squares = 0;
+			for (double score : scores)
+				squares += (score - mean) * (score - mean);
+			sd = scores.length < 2 ? 0 : Math.sqrt(squares / (scores.length - 1));
+			this.rank = rank;
+		}
+
+		// The q-quantile of the match scores, nearest rank.
+		double quantile(double q) {
+			return scores[Math.min(scores.length - 1, Math.max(0, (int) Math.ceil(q * scores.length) - 1))];
+		}
+
+		String summary() {
+			return String.format("%s: mean %.4f, sd %.4f, min %.4f, 5%% %.4f, median %.4f, 95%% %.4f, max %.4f, rank %d",
+					name, mean, sd, quantile(0), quantile(0.05), quantile(0.5), quantile(0.95), quantile(1), rank);
+		}
+	}
+
+	ParameterSearch(ThreePrisonersDilemma game, int threads) {
+		this.game = game;
+		this.threads = threads;
+	}
+
+	// Plays the matches without entrant 0, one first entrant per task.
+	void playBackground() {
+		int numPlayers = game.numPlayers;
+		background = new double[numPlayers];
+		backgroundMatches = new long[numPlayers];
+		List<Callable<double[]>> rows = new ArrayList<>();
+		for (int i=1; i<numPlayers; i++) {
+			final int row = i;
+			rows.add(() -> backgroundRow(row));
+		}
+		// Rows are added in order, so the totals come out the same on any number of threads.
+		for (double[] totals : run(rows))
+			for (int which=0; which<numPlayers; which++) {
+				background[which] += totals[which];
+				backgroundMatches[which] += (long) totals[numPlayers + which];
+			}
+	}
+
+	// The totals of row i, then the match counts, of matches (i, j, k) with i <= j <= k.
+	double[] backgroundRow(int i) {
+		int numPlayers = game.numPlayers;
+		PlayerPool players = new PlayerPool(game);
+		double[] totals = new double[2 * numPlayers];
+		for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			SplittableRandom random = MatchRandom.beginMatch(game.seed, i, j, k);
+			int rounds = game.roundsOfMatch(random);
+			ThreePrisonersDilemma.Player A = players.player(0, i);
+			ThreePrisonersDilemma.Player B = players.player(1, j);
+			ThreePrisonersDilemma.Player C = players.player(2, k);
+			float[] matchResults = game.playMatch(A, B, C, rounds);
+			totals[i] += matchResults[0];
+			totals[j] += matchResults[1];
+			totals[k] += matchResults[2];
+			totals[numPlayers + i]++;
+			totals[numPlayers + j]++;
+			totals[numPlayers + k]++;
+		}
+		return totals;
+	}
+
+	/* Scores a strategy as entrant 0. playBackground must have been called.
+	 Safe to call from several threads at once. */
+	Evaluation evaluate(String name, StrategyRegistry.Factory strategy) {
+		int numPlayers = game.numPlayers;
+		PlayerPool players = new PlayerPool(game);
+		double[] others = new double[numPlayers];
+		long[] otherMatches = new long[numPlayers];
+		double[] scores = new double[numPlayers * (numPlayers + 1) / 2 + numPlayers + 1];
+		int played = 0;
+		for (int j=0; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			SplittableRandom random = MatchRandom.beginMatch(game.seed, 0, j, k);
+			int rounds = game.roundsOfMatch(random);
+			MatchRandom.beginSeat(0);
+			ThreePrisonersDilemma.Player A = strategy.create(game);
+			ThreePrisonersDilemma.Player B = candidateOr(players, strategy, 1, j);
+			ThreePrisonersDilemma.Player C = candidateOr(players, strategy, 2, k);
+			float[] matchResults = game.playMatch(A, B, C, rounds);
+			scores[played++] = matchResults[0];
+			if (j == 0)
+				scores[played++] = matchResults[1];
+			else {
+				others[j] += matchResults[1];
+				otherMatches[j]++;
+			}
+			if (k == 0)
+				scores[played++] = matchResults[2];
+			else {
+				others[k] += matchResults[2];
+				otherMatches[k]++;
+			}
+		}
+		scores = Arrays.copyOf(scores, played);
+
+		// Ties go to the lower entrant, as on the Leaderboard, so entrant 0 wins them.
+		double sum = 0;
+		for (double score : scores)
+			sum += score;
+		double mean = sum / played;
+		int rank = 1;
+		for (int which=1; which<numPlayers; which++)
+			if ((background[which] + others[which]) / (backgroundMatches[which] + otherMatches[which]) > mean)
+				rank++;
+		return new Evaluation(name, scores, rank);
+	}
+
+	private ThreePrisonersDilemma.Player candidateOr(PlayerPool players, StrategyRegistry.Factory strategy, int seat, int which) {
+		if (which != 0)
+			return players.player(seat, which);
+		MatchRandom.beginSeat(seat);
+		return strategy.create(game);
+	}
+
+	// Scores each parameter set, in the order given.
+	List<Evaluation> evaluate(List<ThresholdPlayer.Params> candidates) {
+		List<Callable<Evaluation>> tasks = new ArrayList<>();
+		for (ThresholdPlayer.Params params : candidates)
+			tasks.add(() -> evaluate(params.name, game -> new ThresholdPlayer(params)));
+		return run(tasks);
+	}
+
+	// All evaluated candidates, best mean first.
+	List<Evaluation> search() {
+		SplittableRandom random = new SplittableRandom(MatchRandom.matchSeed(game.seed, -4, 0, 0));
+		Set<String> tried = new HashSet<>();
+		List<Evaluation> ranked = new ArrayList<>();
+		List<ThresholdPlayer.Params> generation = new ArrayList<>();
+		for (String preset : PRESETS)
+			generation.add(ThresholdPlayer.Params.parse(preset));
+		while (generation.size() < population)
+			generation.add(ThresholdPlayer.Params.random(random));
+		for (int g=0; g<=generations; g++) {
+			List<ThresholdPlayer.Params> fresh = new ArrayList<>();
+			for (ThresholdPlayer.Params params : generation)
+				if (tried.add(params.name))
+					fresh.add(params);
+			ranked.addAll(evaluate(fresh));
+			ranked.sort(Comparator.comparingDouble((Evaluation e) -> -e.mean).thenComparing(e -> e.name));
+			if (g == generations)
+				break;
+			int elite = Math.max(1, Math.min(ranked.size(), population / 4));
+			generation.clear();
+			for (int c=0; c<population; c++) {
+				Evaluation parent = ranked.get(random.nextInt(elite));
+				generation.add(ThresholdPlayer.Params.parse(parent.name).mutate(random, step));
+			}
+		}
+		return ranked;
+	}
+
+	private <T> List<T> run(List<Callable<T>> tasks) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<T>> futures = new ArrayList<>();
+			for (Callable<T> task : tasks)
+				futures.add(pool.submit(task));
+			List<T> results = new ArrayList<>();
+			for (Future<T> future : futures)
+				results.add(future.get());
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while playing matches", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/* Tunes ThresholdPlayer for the field of ThreePrisonersDilemma and prints
+	 the best parameter sets with the spread of their match scores. Options:
+	 "-population P" (default 64), "-generations G" (default 10), "-step S"
+	 (default 10), "-top T" prints the best T (default 5), and "-seed S",
+	 "-rounds R", "-threads N", "-field F", "-plugins D" and "-exact" as for
+	 ThreePrisonersDilemma. */
+	public static void main(String[] args) throws IOException {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		int threads = Runtime.getRuntime().availableProcessors();
+		int population = 64, generations = 10, step = 10, top = 5;
+		for (int i=0; i+1<args.length; i++)
+			if (args[i].equals("-plugins"))
+				PluginLoader.load(Paths.get(args[i+1]), game.field);
+		for (int i=0; i+1<args.length; i++) {
+			if (args[i].equals("-population"))
+				population = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-generations"))
+				generations = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-step"))
+				step = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-top"))
+				top = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-seed"))
+				game.seed = Long.parseLong(args[i+1]);
+			if (args[i].equals("-rounds"))
+				game.matchRounds = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-field"))
+				game.setField(game.field.loadField(Paths.get(args[i+1])));
+		}
+		if (Arrays.asList(args).contains("-exact"))
+			game.markov = new MarkovEvaluator();
+
+		ParameterSearch search = new ParameterSearch(game, Math.max(threads, 1));
+		search.population = Math.max(population, PRESETS.length);
+		search.generations = generations;
+		search.step = Math.max(step, 1);
+		long start = System.nanoTime();
+		search.playBackground();
+		System.out.println("Played the matches without entrant 0 in " + (System.nanoTime() - start) / 1000000
+				+ " ms (seed " + game.seed + ")");
+		System.out.println("Entrant 0 now: " + search.evaluate(game.names[0], game.entrants[0]).summary());
+		for (String incumbent : INCUMBENTS)
+			System.out.println("Incumbent " + search.evaluate(incumbent, game.field.factory(incumbent)).summary());
+
+		start = System.nanoTime();
+		List<Evaluation> ranked = search.search();
+		System.out.println("Scored " + ranked.size() + " parameter sets in " + (System.nanoTime() - start) / 1000000 + " ms");
+		for (int r=0; r<Math.min(top, ranked.size()); r++)
+			System.out.println(ranked.get(r).summary());
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ PayoffTable is the payoff matrix flattened for the match loop. A round is
+ identified by its joint action code, (PlayA << 2) | (PlayB << 1) | PlayC, and
+ the payoffs of all three players for that round sit next to each other at
+ table[3*code], table[3*code+1] and table[3*code+2]: one lookup instead of
+ three walks through payoff[][][] in rotated order.
+
+ It can also score a whole block of rounds from packed histories at once: for
+ each of the 8 joint codes, one Long.bitCount per 64 rounds tells how many
+ rounds were played with it. */
+class PayoffTable {
+
+	final int[] table = new int[3 * 8];
+
+	// Builds the table for a matrix laid out like ThreePrisonersDilemma.payoff,
+	// where payoff[i][j][k] is the payoff of the player playing i.
+	static PayoffTable of(int[][][] payoff) {
+		PayoffTable payoffs = new PayoffTable();
+		for (int code=0; code<8; code++) {
+			int a = code >> 2, b = (code >> 1) & 1, c = code & 1;
+			payoffs.table[3*code] = payoff[a][b][c];
+			payoffs.table[3*code+1] = payoff[b][c][a];
+			payoffs.table[3*code+2] = payoff[c][a][b];
+		}
+		return payoffs;
+	}
+
+	static int code(int playA, int playB, int playC) {
+		return (playA << 2) | (playB << 1) | playC;
+	}
+
+	// The payoffs of player A, B or C (0, 1 or 2) for a joint action code.
+	int payoff(int code, int player) {
+		return table[3*code + player];
+	}
+
+	/* Sums the payoffs of rounds [from, to) of the three histories and returns
+	 them as {A, B, C}. */
+	long[] score(PackedHistory a, PackedHistory b, PackedHistory c, int from, int to) {
+		long[] scores = new long[3];
+		if (from >= to)
+			return scores;
+		long[] countOf = new long[8];
+		int first = from >>> 6, last = (to - 1) >>> 6;
+		for (int w=first; w<=last; w++) {
+			long mask = -1L;
+			if (w == first)
+				mask &= -1L << (from & 63);
+			if (w == last)
+				mask &= -1L >>> (63 - ((to - 1) & 63));
+			long wa = a.words[w - a.base], wb = b.words[w - b.base], wc = c.words[w - c.base];
+			for (int code=0; code<8; code++) {
+				long bits = mask;
+				bits &= (code & 4) != 0 ? wa : ~wa;
+				bits &= (code & 2) != 0 ? wb : ~wb;
+				bits &= (code & 1) != 0 ? wc : ~wc;
+				countOf[code] += Long.bitCount(bits);
+			}
+		}
+		for (int code=0; code<8; code++) {
+			scores[0] += countOf[code] * table[3*code];
+			scores[1] += countOf[code] * table[3*code+1];
+			scores[2] += countOf[code] * table[3*code+2];
+		}
+		return scores;
+	}
+}
@@ -0,0 +1,50 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ PlayerPool hands out the players for each seat of a match.
+
+ Stateless players (see Player.stateless) are made once per seat and
+ strategy and then reused for every match, by every entrant of that strategy:
+ the 29 NastyPlayers of the default field are three objects, one for each
+ seat, since a player holds the stats of the seat it sits in. Everyone else
+ gets a fresh copy for each match, as before. A pool is not thread-safe:
+ each thread playing matches needs its own. */
+class PlayerPool {
+
+	final ThreePrisonersDilemma game;
+	final StrategyRegistry.Factory[] entrants;
+
+	// reusable[seat][which] is the player kept for that seat, or null if that
+	// entrant has to be made fresh for every match.
+	final ThreePrisonersDilemma.Player[][] reusable;
+
+	PlayerPool(ThreePrisonersDilemma game) {
+		this.game = game;
+		this.entrants = game.entrants;
+		reusable = new ThreePrisonersDilemma.Player[3][game.numPlayers];
+		Map<Object, ThreePrisonersDilemma.Player[]> shared = new HashMap<>();
+		for (int which=0; which<game.numPlayers; which++) {
+			ThreePrisonersDilemma.Player player = entrants[which].create(game);
+			if (!player.stateless())
+				continue;
+			ThreePrisonersDilemma.Player[] seats = shared.get(player.strategy());
+			if (seats == null) {
+				seats = new ThreePrisonersDilemma.Player[] {player, entrants[which].create(game), entrants[which].create(game)};
+				shared.put(player.strategy(), seats);
+			}
+			for (int seat=0; seat<3; seat++)
+				reusable[seat][which] = seats[seat];
+		}
+	}
+
+	/* Returns the player of the given entrant for a seat of the current match.
+	 Must be called after MatchRandom.beginMatch, once per seat. */
+	ThreePrisonersDilemma.Player player(int seat, int which) {
+		ThreePrisonersDilemma.Player player = reusable[seat][which];
+		if (player != null)
+			return player;
+		MatchRandom.beginSeat(seat);
+		return entrants[which].create(game);
+	}
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/*
+ PluginLoader enters strategies that live outside this file, so that a
+ submission no longer has to be pasted into ThreePrisonersDilemma.
+
+ Submissions come as a class of their own with its own Player base, like
+ Wu_Rongxi_Player: an outer class holding an abstract Player and one or more
+ strategies extending it. Such a Player is a different class from the one
+ in here, and the engine's Player is private to its package, which a class
+ from another class loader is never in, so a plugin cannot extend it.
+ Instead the loader accepts any class with a method
+
+	int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2)
+
+ of its own or inherited, made either with no arguments or, for an inner
+ class, from an instance of its outer class made with no arguments. Each one
+ plays through an adapter Player that passes every call on, with histories
+ of its own rather than the engine's: the adapter appends the newest round
+ to them on every call, so a plugin that writes to them only spoils its own
+ view. They can be longer than n, like the engine's. If the class also has
+ lookback(), deterministic(), finiteState() or stateless() methods like the
+ ones of Player, the adapter asks them once per player and answers the same,
+ and with a bounded lookback its histories hold only that many rounds and
+ n counts from the first one held, as the engine's do when they slide.
+
+ The directory given is searched for class files, under their package
+ directories as on a class path, and for jars, which are searched in turn.
+ Classes of the engine and abstract or anonymous classes are left out.
+
+ Everything reflective is done when loading: the constructors and
+ selectAction are found, opened and turned into method handles once per
+ strategy, so making a player for a match is two constructor calls through a
+ handle and every move one invokeExact on top of selectAction itself.
+
+ A strategy is registered under its name as Player.name() would give it, the
+ part of the class name after the first $. If that name is taken, by one of
+ the built-in strategies for one, it is registered under the whole class name
+ with the $ turned into a dot instead, such as Wu_Rongxi_Player.RX4. Plugin
+ strategies draw their random numbers from wherever they like, usually
+ Math.random(), so a seed does not replay them. */
+class PluginLoader {
+
+	// The first size of an adapter's histories, and the rounds it appends
+	// between two slides when its plugin declares a lookback.
+	private static final int INITIAL_CAPACITY = 128;
+	private static final int SLIDE_INTERVAL = 4096;
+
+	private static final MethodType SELECT_ACTION = MethodType.methodType(int.class,
+			Object.class, int.class, int[].class, int[].class, int[].class);
+
+	private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/* Registers every strategy found in dir and returns their names, in the
+	 order they were found. */
+	static List<String> load(Path dir, StrategyRegistry registry) throws IOException {
+		if (!Files.isDirectory(dir))
+			throw new IOException("No plugin directory " + dir);
+		List<URL> path = new ArrayList<>();
+		List<String> classNames = new ArrayList<>();
+		path.add(dir.toUri().toURL());
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.filter(f -> f.toString().endsWith(".class")).sorted().forEach(f -> {
+				String name = dir.relativize(f).toString();
+				classNames.add(name.substring(0, name.length() - ".class".length()).replace(f.getFileSystem().getSeparator(), "."));
+			});
+		}
+		try (DirectoryStream<Path> jars = Files.newDirectoryStream(dir, "*.jar")) {
+			for (Path jar : jars) {
+				path.add(jar.toUri().toURL());
+				try (JarFile file = new JarFile(jar.toFile())) {
+					for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements(); ) {
+						String name = entries.nextElement().getName();
+						if (name.endsWith(".class"))
+							classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+					}
+				}
+			}
+		}
+
+		// Kept open for as long as the strategies are played.
+		ClassLoader classLoader = new URLClassLoader(path.toArray(new URL[0]), PluginLoader.class.getClassLoader());
+		PluginLoader loader = new PluginLoader();
+		List<String> loaded = new ArrayList<>();
+		for (String className : classNames) {
+			if (className.endsWith("module-info") || className.endsWith("package-info"))
+				continue;
+			Class<?> c;
+			try {
+				c = Class.forName(className, false, classLoader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				System.err.println("Skipping plugin class " + className + ": " + e);
+				continue;
+			}
+			Strategy strategy;
+			try {
+				strategy = loader.strategy(c);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				System.err.println("Skipping plugin class " + className + ": " + e);
+				continue;
+			}
+			if (strategy == null)
+				continue;
+			String name = strategy.name;
+			if (registry.isRegistered(name))
+				name = c.getName().replace('$', '.');
+			if (registry.isRegistered(name)) {
+				System.err.println("Skipping plugin class " + className + ": " + name + " is already registered");
+				continue;
+			}
+			strategy.name = name;
+			Strategy found = strategy;
+			registry.register(name, game -> new Adapter(found));
+			loaded.add(name);
+		}
+		return loaded;
+	}
+
+	/* The strategy played by class c, or null if c is not one. */
+	Strategy strategy(Class<?> c) throws ReflectiveOperationException {
+		if (ThreePrisonersDilemma.Player.class.isAssignableFrom(c) || c.isInterface() || c.isAnonymousClass()
+				|| c.isLocalClass() || c.isSynthetic() || Modifier.isAbstract(c.getModifiers()))
+			return null;
+		Method selectAction = method(c, "selectAction", int.class, int[].class, int[].class, int[].class);
+		if (selectAction == null || selectAction.getReturnType() != int.class)
+			return null;
+
+		MethodHandle create;
+		Class<?> outer = c.getEnclosingClass();
+		if (outer != null && !Modifier.isStatic(c.getModifiers())) {
+			create = MethodHandles.filterReturnValue(constructor(outer), constructor(c, outer));
+		} else {
+			create = constructor(c);
+		}
+
+		Strategy strategy = new Strategy();
+		String name = c.getName();
+		strategy.name = name.substring(name.indexOf('$')+1);
+		strategy.create = create.asType(MethodType.methodType(Object.class));
+		strategy.selectAction = lookup.unreflect(selectAction).asType(SELECT_ACTION);
+		strategy.lookback = hook(c, "lookback", int.class);
+		strategy.deterministic = hook(c, "deterministic", boolean.class);
+		strategy.finiteState = hook(c, "finiteState", boolean.class);
+		strategy.stateless = hook(c, "stateless", boolean.class);
+		return strategy;
+	}
+
+	private MethodHandle constructor(Class<?> c, Class<?>... parameters) throws ReflectiveOperationException {
+		Constructor<?> constructor = c.getDeclaredConstructor(parameters);
+		constructor.setAccessible(true);
+		return lookup.unreflectConstructor(constructor);
+	}
+
+	// A handle of type (Object)returns on the no-argument method of that name, or null.
+	private MethodHandle hook(Class<?> c, String name, Class<?> returns) throws IllegalAccessException {
+		Method method = method(c, name);
+		if (method == null || method.getReturnType() != returns)
+			return null;
+		return lookup.unreflect(method).asType(MethodType.methodType(returns, Object.class));
+	}
+
+	// The method of c or its nearest superclass with that signature, opened for calling.
+	private static Method method(Class<?> c, String name, Class<?>... parameters) {
+		for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass()) {
+			try {
+				Method method = k.getDeclaredMethod(name, parameters);
+				if (Modifier.isStatic(method.getModifiers()))
+					return null;
+				method.setAccessible(true);
+				return method;
+			} catch (NoSuchMethodException e) {
+				// look in the superclass
+			}
+		}
+		return null;
+	}
+
+	// What the adapters of one plugin strategy share, resolved once when loading.
+	static final class Strategy {
+		String name;
+		MethodHandle create;        // ()Object, a new instance of the strategy
+		MethodHandle selectAction;  // (Object, int, int[], int[], int[])int
+		MethodHandle lookback, deterministic, finiteState, stateless; // (Object)int or boolean, or null
+	}
+
+	// The Player the engine sees for one instance of a plugin strategy.
+	static final class Adapter extends ThreePrisonersDilemma.Player {
+		private final Strategy strategy;
+		private final Object player;
+		private final int lookback;
+		private final boolean deterministic, finiteState, stateless;
+
+		// The histories handed to the plugin: held rounds, of which the last
+		// was round seen - 1 of the match.
+		private int[] my = new int[INITIAL_CAPACITY], opp1 = new int[INITIAL_CAPACITY], opp2 = new int[INITIAL_CAPACITY];
+		private int held, seen;
+
+		Adapter(Strategy strategy) {
+			this.strategy = strategy;
+			try {
+				player = (Object) strategy.create.invokeExact();
+				lookback = strategy.lookback != null ? (int) strategy.lookback.invokeExact(player) : ThreePrisonersDilemma.FULL_HISTORY;
+				deterministic = strategy.deterministic != null && (boolean) strategy.deterministic.invokeExact(player);
+				finiteState = strategy.finiteState != null && (boolean) strategy.finiteState.invokeExact(player);
+				stateless = strategy.stateless != null && (boolean) strategy.stateless.invokeExact(player);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Could not make a " + strategy.name, e);
+			}
+		}
+
+		// The plugin gets the adapter's own histories, one round longer than on
+		// the last call of the match.
+		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+			follow(n, myHistory, oppHistory1, oppHistory2);
+			try {
+				return (int) strategy.selectAction.invokeExact(player, held, my, opp1, opp2);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(strategy.name + " threw " + e, e);
+			}
+		}
+
+		/* Brings the histories up to the engine's n rounds, appending the
+		 newest one when a single round has passed since the last call, as it
+		 does every round of a match, and copying them all over otherwise: a
+		 new match, a slide of the engine's buffers or a call out of turn. */
+		private void follow(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+			int rounds = stats != null ? stats.rounds() : n;
+			if (n == 0) {
+				held = 0;
+			} else if (rounds == seen + 1) {
+				my[held] = myHistory[n-1];
+				opp1[held] = oppHistory1[n-1];
+				opp2[held] = oppHistory2[n-1];
+				held++;
+			} else {
+				if (n > my.length)
+					grow(n);
+				System.arraycopy(myHistory, 0, my, 0, n);
+				System.arraycopy(oppHistory1, 0, opp1, 0, n);
+				System.arraycopy(oppHistory2, 0, opp2, 0, n);
+				held = n;
+			}
+			seen = rounds;
+			if (held == my.length) {
+				if (lookback < held - SLIDE_INTERVAL)
+					slide();
+				else
+					grow(2 * held);
+			}
+		}
+
+		private void grow(int capacity) {
+			my = Arrays.copyOf(my, capacity);
+			opp1 = Arrays.copyOf(opp1, capacity);
+			opp2 = Arrays.copyOf(opp2, capacity);
+		}
+
+		// Keeps the last lookback rounds, moved to the front, and at least one
+		// so that n == 0 still means the first round.
+		private void slide() {
+			int keep = Math.max(lookback, 1);
+			System.arraycopy(my, held - keep, my, 0, keep);
+			System.arraycopy(opp1, held - keep, opp1, 0, keep);
+			System.arraycopy(opp2, held - keep, opp2, 0, keep);
+			held = keep;
+		}
+
+		int lookback() {
+			return lookback;
+		}
+
+		boolean deterministic() {
+			return deterministic;
+		}
+
+		boolean finiteState() {
+			return finiteState;
+		}
+
+		boolean stateless() {
+			return stateless;
+		}
+
+		String name() {
+			return strategy.name;
+		}
+
+		Object strategy() {
+			return strategy;
+		}
+	}
+}
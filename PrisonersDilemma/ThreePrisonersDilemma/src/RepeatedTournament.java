@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ RepeatedTournament plays the full tournament over and over, until the
+ ranking of the strategies no longer depends on the luck of the draw.
+
+ One tournament is noisy: RandomPlayer, FreakyPlayer and T4TPlayer draw
+ random moves and every match draws its length, so two strategies a few
+ hundredths of a point apart, like RX4 and the T4TPlayers, can swap places
+ from one seed to the next. Three things make repetitions count for more:
+
+ - common random numbers: the random numbers of a match, its round count
+   and the stream of each seat, are drawn from the repetition and the two
+   entrants in seats B and C, not from the entrant in seat A. Whoever sits
+   in seat A against j and k, the opponents then draw the same moves for as
+   long, so two strategies meet (j, k) in the same random world. Two
+   strategies are compared by the mean and spread of the difference of their
+   scores pair by pair, rather than each on its own, and the luck they
+   shared cancels out of it;
+ - antithetic round counts: repetitions come in pairs, and where a match of
+   the first draws u for its length, 90 + 20u rounds, the same match in the
+   second plays 90 + 20(1 - u). A pair's round counts always add up to about
+   200, so the length of matches, which moves every score, hardly varies
+   between pairs. The players' own random numbers are drawn afresh for
+   both repetitions of a pair. Pairs are the independent samples;
+ - sequential stopping: after every pair the strategies are ranked by their
+   mean score per match, and the tournament stops as soon as every pair of
+   neighbours in that ranking is told apart or tied. Told apart is a mean
+   difference more than zBound() standard errors from 0; tied is the same
+   score in every repetition so far. The ranking is looked at up to once a
+   pair and has several neighbours each time, so the bound is Bonferroni's
+   over all of those tests: a mistaken call anywhere in the run has at most
+   chance alpha. At most maxPairs pairs are played.
+
+ Copies of one strategy are the same strategy, so the ranking is of the
+ strategies, each scored by the mean of its entrants. At the end the
+ variance reduction of the closest neighbours is reported: how many more
+ pairs comparing their means unpaired would have taken for the same
+ standard error.
+
+ Each repetition is spread over a pool of threads, one first entrant per
+ task, and merged in order, so the result only depends on the seed. The
+ matches are not written to a log or record (-repeat rejects -log and
+ -record). */
+class RepeatedTournament {
+
+	// Pairs played before the ranking may be called settled, and the fewest -repeat takes.
+	static final int MIN_PAIRS = 3;
+
+	final ThreePrisonersDilemma game;
+	final int maxPairs;
+	final int threads;
+
+	double z = 1.96; // the width of the intervals printed, in standard errors
+	double alpha = 0.05; // the chance of telling apart two neighbours wrongly, over the whole run
+
+	final String[] types;
+	final int[] typeOf;
+	final int[] copies;
+
+	// The mean score per match of each strategy, one row per repetition.
+	final List<double[]> repetitions = new ArrayList<>();
+	long matchesPlayed;
+
+	RepeatedTournament(ThreePrisonersDilemma game, int maxPairs, int threads) {
+		if (maxPairs < MIN_PAIRS)
+			throw new IllegalArgumentException("A repeated tournament needs at least " + MIN_PAIRS + " pairs, got " + maxPairs);
+		this.game = game;
+		this.maxPairs = maxPairs;
+		this.threads = threads;
+		ScoreBoard board = new ScoreBoard(game.names);
+		types = board.types;
+		typeOf = board.typeOf;
+		copies = new int[types.length];
+		for (int which=0; which<game.numPlayers; which++)
+			copies[typeOf[which]]++;
+	}
+
+	void play() {
+		if (game.matchCache != null)
+			game.matchCache.clear();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			for (int pair=0; pair<maxPairs; pair++) {
+				long roundsSeed = MatchRandom.matchSeed(game.seed, -6, pair, 0);
+				for (int twin=0; twin<2; twin++)
+					repetitions.add(playRepetition(pool, MatchRandom.matchSeed(game.seed, -5, pair, twin), roundsSeed, twin == 1));
+				if (pair + 1 >= MIN_PAIRS && settled())
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while playing the tournament", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// One tournament; returns the mean score per match of each strategy.
+	double[] playRepetition(ExecutorService pool, long seed, long roundsSeed, boolean antithetic)
+			throws InterruptedException, ExecutionException {
+		int numPlayers = game.numPlayers;
+		List<Future<double[]>> rows = new ArrayList<>(numPlayers);
+		for (int i=0; i<numPlayers; i++) {
+			final int row = i;
+			rows.add(pool.submit(() -> playRow(row, seed, roundsSeed, antithetic)));
+		}
+		double[] totals = new double[numPlayers];
+		for (Future<double[]> row : rows) {
+			double[] rowTotals = row.get();
+			for (int which=0; which<numPlayers; which++)
+				totals[which] += rowTotals[which];
+		}
+		// Every entrant sits in (n+1)(n+2)/2 seats of the tournament.
+		double seats = (numPlayers + 1.0) * (numPlayers + 2.0) / 2;
+		double[] means = new double[types.length];
+		for (int which=0; which<numPlayers; which++)
+			means[typeOf[which]] += totals[which] / seats / copies[typeOf[which]];
+		matchesPlayed += (long) numPlayers * (numPlayers + 1) * (numPlayers + 2) / 6;
+		return means;
+	}
+
+	// The totals of every entrant over the matches (i, j, k) with i <= j <= k.
+	double[] playRow(int i, long seed, long roundsSeed, boolean antithetic) {
+		int numPlayers = game.numPlayers;
+		PlayerPool players = new PlayerPool(game);
+		double[] totals = new double[numPlayers];
+		for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			// Seeded without i, so that every first seat meets j and k with
+			// the same random numbers.
+			MatchRandom.beginMatch(seed, -1, j, k);
+			int rounds = roundsOfMatch(roundsSeed, j, k, antithetic);
+			ThreePrisonersDilemma.Player A = players.player(0, i);
+			ThreePrisonersDilemma.Player B = players.player(1, j);
+			ThreePrisonersDilemma.Player C = players.player(2, k);
+			float[] matchResults = game.playMatch(A, B, C, rounds);
+			totals[i] += matchResults[0];
+			totals[j] += matchResults[1];
+			totals[k] += matchResults[2];
+		}
+		return totals;
+	}
+
+	// 90 to 110 rounds from u, or from 1 - u for the second of a pair.
+	int roundsOfMatch(long roundsSeed, int j, int k, boolean antithetic) {
+		if (game.matchRounds > 0)
+			return game.matchRounds;
+		double u = (MatchRandom.matchSeed(roundsSeed, -1, j, k) >>> 11) * 0x1.0p-53;
+		return 90 + (int) Math.rint(20 * (antithetic ? 1 - u : u));
+	}
+
+	// The mean score per match of each strategy over all repetitions.
+	double[] means() {
+		double[] means = new double[types.length];
+		for (double[] repetition : repetitions)
+			for (int t=0; t<types.length; t++)
+				means[t] += repetition[t] / repetitions.size();
+		return means;
+	}
+
+	// The strategies, best mean first.
+	Integer[] ranking() {
+		double[] means = means();
+		Integer[] order = new Integer[types.length];
+		for (int t=0; t<order.length; t++)
+			order[t] = t;
+		Arrays.sort(order, (a, b) -> Double.compare(means[b], means[a]));
+		return order;
+	}
+
+	// The score of t, one value per pair of repetitions.
+	double[] scores(int t) {
+		double[] x = new double[repetitions.size() / 2];
+		for (int p=0; p<x.length; p++)
+			x[p] = (repetitions.get(2*p)[t] + repetitions.get(2*p + 1)[t]) / 2;
+		return x;
+	}
+
+	// The score of t minus that of u, one value per pair of repetitions.
+	double[] differences(int t, int u) {
+		double[] d = scores(t), other = scores(u);
+		for (int p=0; p<d.length; p++)
+			d[p] -= other[p];
+		return d;
+	}
+
+	static double mean(double[] x) {
+		double sum = 0;
+		for (double v : x)
+			sum += v;
+		return sum / x.length;
+	}
+
+	// Infinite for fewer than two values, which say nothing about the spread.
+	static double standardError(double[] x) {
+		if (x.length < 2)
+			return Double.POSITIVE_INFINITY;
+		double mean = mean(x), squares = 0;
+		for (double v : x)
+			squares += (v - mean) * (v - mean);
+		return Math.sqrt(squares / (x.length - 1) / x.length);
+	}
+
+	/* How many standard errors apart neighbours must be: the two sided
+	 normal bound for alpha, shared between every neighbouring pair at
+	 every look the stopping rule may take. */
+	double zBound() {
+		int looks = maxPairs - MIN_PAIRS + 1;
+		int tests = Math.max(types.length - 1, 1) * looks;
+		return upperQuantile(alpha / (2.0 * tests));
+	}
+
+	// Whether t and u are told apart. Pairs that never differ are tied, not apart.
+	boolean separated(int t, int u) {
+		double[] d = differences(t, u);
+		double se = standardError(d);
+		return se == 0 ? mean(d) != 0 : Math.abs(mean(d)) > zBound() * se;
+	}
+
+	// Whether t and u have scored exactly the same in every repetition.
+	boolean tied(int t, int u) {
+		double[] d = differences(t, u);
+		return standardError(d) == 0 && mean(d) == 0;
+	}
+
+	boolean settled() {
+		Integer[] order = ranking();
+		for (int r=1; r<order.length; r++)
+			if (!separated(order[r-1], order[r]) && !tied(order[r-1], order[r]))
+				return false;
+		return true;
+	}
+
+	// The z with a standard normal tail of p above it, by bisection.
+	static double upperQuantile(double p) {
+		double lo = 0, hi = 40;
+		for (int step=0; step<100; step++) {
+			double mid = (lo + hi) / 2;
+			if (0.5 * erfc(mid / Math.sqrt(2)) > p)
+				lo = mid;
+			else
+				hi = mid;
+		}
+		return (lo + hi) / 2;
+	}
+
+	// The complementary error function, to a relative 1.2e-7 (Numerical Recipes' erfcc).
+	static double erfc(double x) {
+		double t = 1 / (1 + 0.5 * Math.abs(x));
+		double y = t * Math.exp(-x*x - 1.26551223 + t*(1.00002368 + t*(0.37409196 + t*(0.09678418
+				+ t*(-0.18628806 + t*(0.27886807 + t*(-1.13520398 + t*(1.48851587
+				+ t*(-0.82215223 + t*0.17087277)))))))));
+		return x >= 0 ? y : 2 - y;
+	}
+
+	void printResults() {
+		Integer[] order = ranking();
+		double[] means = means();
+		int pairs = repetitions.size() / 2;
+		if (game.verbose) System.out.println();
+		System.out.println("Repeated Tournament Results (seed " + game.seed + ", " + pairs + " antithetic pairs, "
+				+ matchesPlayed + " matches)");
+		for (int r=0; r<order.length; r++) {
+			int t = order[r];
+			System.out.printf("%s: %.4f +- %.4f points per match (%d entrants)%n",
+					types[t], means[t], z * standardError(scores(t)), copies[t]);
+		}
+
+		int closest = -1;
+		double closestZ = Double.POSITIVE_INFINITY;
+		int unsettled = 0, ties = 0;
+		for (int r=1; r<order.length; r++) {
+			if (tied(order[r-1], order[r])) {
+				ties++;
+				continue;
+			}
+			if (!separated(order[r-1], order[r]))
+				unsettled++;
+			double[] d = differences(order[r-1], order[r]);
+			double se = standardError(d);
+			if (se == 0)
+				continue;
+			double gap = Math.abs(mean(d)) / se;
+			if (gap < closestZ) {
+				closestZ = gap;
+				closest = r;
+			}
+		}
+		System.out.println(unsettled == 0 ? "Every neighbouring pair is told apart" + (ties > 0 ? " or tied." : ".")
+				: unsettled + " of " + (order.length - 1) + " neighbouring pairs are not told apart after " + pairs + " pairs.");
+		if (ties > 0)
+			System.out.printf("Tied neighbouring pairs, the same score in every repetition: %d.%n", ties);
+		System.out.printf("Neighbours are told apart %.2f standard errors apart (alpha %.2f over %d looks).%n",
+				zBound(), alpha, maxPairs - MIN_PAIRS + 1);
+		if (closest > 0)
+			printReduction(order[closest-1], order[closest]);
+	}
+
+	/* Compares the standard error of the paired difference of t and u with
+	 the one of the difference of their means, as if the pairs that scored
+	 them were independent. Both are over the same pairs. */
+	void printReduction(int t, int u) {
+		double unpaired = Math.sqrt(square(standardError(scores(t))) + square(standardError(scores(u))));
+		double[] d = differences(t, u);
+		double se = standardError(d);
+		System.out.printf("Closest neighbours %s and %s: %.6f +- %.6f apart; unpaired, that would take %.1f times as many pairs.%n",
+				types[t], types[u], mean(d), z * se, square(unpaired / se));
+	}
+
+	private static double square(double x) {
+		return x * x;
+	}
+}
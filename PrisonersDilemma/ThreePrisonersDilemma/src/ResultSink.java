@@ -0,0 +1,195 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ ResultSink takes the result of every match and writes it out on a separate
+ thread, so that logging every match does not slow the tournament down.
+
+ The tournament fills fixed-size batches of records and hands each full batch
+ to the writer through a bounded queue; the writer gives emptied batches back
+ through a second queue. Nothing is allocated per match on the tournament
+ side, and if the writer falls behind the tournament waits for it rather than
+ piling up memory. Strategy names are looked up once, not per match.
+
+ Records come in three formats:
+ - TEXT, the two lines per match that verbose mode has always printed;
+ - CSV, one line "i,j,k,nameA,nameB,nameC,rounds,scoreA,scoreB,scoreC";
+ - BINARY, seven big-endian values per match: int i, j, k, rounds and float
+   scoreA, scoreB, scoreC (28 bytes).
+
+ A sink has a single producer: only one thread may call match(). */
+class ResultSink implements AutoCloseable {
+
+	enum Format { TEXT, CSV, BINARY }
+
+	static final int BATCH_SIZE = 4096;
+	static final int QUEUED_BATCHES = 8;
+
+	static final class Batch {
+		final int[] i = new int[BATCH_SIZE], j = new int[BATCH_SIZE], k = new int[BATCH_SIZE];
+		final int[] rounds = new int[BATCH_SIZE];
+		final float[] scoreA = new float[BATCH_SIZE], scoreB = new float[BATCH_SIZE], scoreC = new float[BATCH_SIZE];
+		int size;
+	}
+
+	// Handed to the writer after the last batch.
+	private static final Batch END = new Batch();
+
+	final Format format;
+	final String[] names;
+
+	private final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+	private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+	private Batch current = new Batch();
+
+	private final Writer text;
+	private final DataOutputStream binary;
+	private final boolean closeOutput;
+	private final Thread writer;
+	private volatile IOException failure;
+
+	/* Writes to out, which is closed with the sink unless it is System.out.
+	 names holds the name of each entrant. */
+	ResultSink(OutputStream out, Format format, String[] names) {
+		this.format = format;
+		this.names = names;
+		closeOutput = out != System.out;
+		if (format == Format.BINARY) {
+			binary = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+			text = null;
+		} else {
+			text = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+			binary = null;
+		}
+		for (int b=0; b<QUEUED_BATCHES; b++)
+			free.add(new Batch());
+		writer = new Thread(this::drain, "result-sink");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	void match(int i, int j, int k, int rounds, float[] matchResults) {
+		Batch batch = current;
+		int m = batch.size++;
+		batch.i[m] = i;
+		batch.j[m] = j;
+		batch.k[m] = k;
+		batch.rounds[m] = rounds;
+		batch.scoreA[m] = matchResults[0];
+		batch.scoreB[m] = matchResults[1];
+		batch.scoreC[m] = matchResults[2];
+		if (batch.size == BATCH_SIZE) {
+			hand(batch);
+			current = take(free);
+		}
+	}
+
+	// Writes out everything still queued and closes the output.
+	public void close() {
+		if (current.size > 0)
+			hand(current);
+		hand(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null)
+			throw new UncheckedIOException("Could not write match results", failure);
+	}
+
+	private void hand(Batch batch) {
+		if (failure != null)
+			throw new UncheckedIOException("Could not write match results", failure);
+		try {
+			full.put(batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing match results", e);
+		}
+	}
+
+	private static Batch take(BlockingQueue<Batch> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing match results", e);
+		}
+	}
+
+	// The writer thread.
+	private void drain() {
+		StringBuilder line = new StringBuilder(256);
+		boolean failed = false;
+		for (Batch batch = take(full); batch != END; batch = take(full)) {
+			if (!failed) {
+				try {
+					write(batch, line);
+				} catch (IOException e) {
+					failure = e;
+					failed = true;
+				}
+			}
+			batch.size = 0;
+			free.add(batch);
+		}
+		try {
+			if (binary != null) {
+				binary.flush();
+				if (closeOutput)
+					binary.close();
+			} else {
+				text.flush();
+				if (closeOutput)
+					text.close();
+			}
+		} catch (IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+	}
+
+	private void write(Batch batch, StringBuilder line) throws IOException {
+		for (int m=0; m<batch.size; m++) {
+			String nameA = names[batch.i[m]], nameB = names[batch.j[m]], nameC = names[batch.k[m]];
+			switch (format) {
+			case BINARY:
+				binary.writeInt(batch.i[m]);
+				binary.writeInt(batch.j[m]);
+				binary.writeInt(batch.k[m]);
+				binary.writeInt(batch.rounds[m]);
+				binary.writeFloat(batch.scoreA[m]);
+				binary.writeFloat(batch.scoreB[m]);
+				binary.writeFloat(batch.scoreC[m]);
+				continue;
+			case CSV:
+				line.setLength(0);
+				line.append(batch.i[m]).append(',').append(batch.j[m]).append(',').append(batch.k[m]).append(',')
+					.append(nameA).append(',').append(nameB).append(',').append(nameC).append(',')
+					.append(batch.rounds[m]).append(',')
+					.append(batch.scoreA[m]).append(',').append(batch.scoreB[m]).append(',').append(batch.scoreC[m])
+					.append('\n');
+				break;
+			case TEXT:
+				line.setLength(0);
+				line.append("Out of ").append(batch.rounds[m]).append(" times").append(System.lineSeparator())
+					.append(nameA).append(" scored ").append(batch.scoreA[m])
+					.append(" points, ").append(nameB).append(" scored ").append(batch.scoreB[m])
+					.append(" points, and ").append(nameC).append(" scored ").append(batch.scoreC[m]).append(" points.")
+					.append(System.lineSeparator());
+				break;
+			}
+			text.append(line);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ SampledTournament ranks fields too large for the full tournament, which plays
+ about N^3/6 matches (some 167 million for 1000 players). Instead every player
+ hosts a fixed number of matches against opponents drawn at random, so the
+ work grows linearly with the field.
+
+ The draw is stratified: a player's opponents are dealt from a shuffled deck
+ of every other entrant, reshuffled only once it runs out, so each player
+ meets every other one about equally often rather than whoever the dice
+ favour. The host takes seats A, B and C in turn. Every seat of every match
+ counts towards that entrant's sample, so each player ends up with about
+ three times as many matches as it hosted.
+
+ The result is each player's average score per match with a 95% confidence
+ interval, mean +- 1.96 * sd / sqrt(n), from a ScoreBoard. Averages are
+ comparable across players whatever the number of matches each of them
+ played, unlike the totals of the full tournament. Players whose intervals
+ overlap their neighbour's in the ranking cannot really be told apart at
+ this sample size.
+
+ Like ParallelTournament, hosts are spread over a pool of threads and their
+ matches merged in host order, with every match seeded on its own, so the
+ estimates only depend on the seed. */
+class SampledTournament {
+
+	static final double Z95 = 1.96;
+
+	final ThreePrisonersDilemma game;
+	final int matchesPerPlayer;
+	final int threads;
+
+	// Every seat of every match, in host order.
+	final ScoreBoard scores;
+
+	SampledTournament(ThreePrisonersDilemma game, int matchesPerPlayer, int threads) {
+		this.game = game;
+		this.matchesPerPlayer = matchesPerPlayer;
+		this.threads = threads;
+		scores = game.newScoreBoard();
+	}
+
+	// The matches hosted by one player: the entrants in each seat, the rounds
+	// and the scores, in the order they were played.
+	static class Row {
+		final int[] seats;
+		final int[] rounds;
+		final float[] scores;
+		final PackedHistory[][] moves;
+
+		Row(int matches, boolean keepMoves) {
+			seats = new int[3 * matches];
+			rounds = new int[matches];
+			scores = new float[3 * matches];
+			moves = keepMoves ? new PackedHistory[matches][] : null;
+		}
+	}
+
+	void play() {
+		int numPlayers = game.numPlayers;
+		if (numPlayers < 3)
+			throw new IllegalArgumentException("A sampled tournament needs at least 3 players, got " + numPlayers);
+		if (game.matchCache != null)
+			game.matchCache.clear();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		List<Future<Row>> rows = new ArrayList<>(numPlayers);
+		try {
+			for (int host=0; host<numPlayers; host++) {
+				final int row = host;
+				rows.add(pool.submit(() -> playRow(row)));
+			}
+			for (int host=0; host<numPlayers; host++)
+				merge(rows.get(host).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Tournament interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	Row playRow(int host) {
+		int numPlayers = game.numPlayers;
+		Row row = new Row(matchesPerPlayer, game.moveLog != null);
+		PlayerPool players = new PlayerPool(game);
+
+		// The deck of opponents: everyone but the host.
+		int[] deck = new int[numPlayers - 1];
+		for (int which=0, d=0; which<numPlayers; which++)
+			if (which != host)
+				deck[d++] = which;
+		SplittableRandom shuffler = new SplittableRandom(MatchRandom.matchSeed(game.seed, -1, host, -1));
+		int dealt = deck.length;
+
+		int[] seats = new int[3];
+		for (int m=0; m<matchesPerPlayer; m++) {
+			int[] opponents = new int[2];
+			for (int o=0; o<2; o++) {
+				if (dealt == deck.length) {
+					shuffle(deck, shuffler);
+					dealt = 0;
+					// A fresh deck may start with the opponent just dealt: put
+					// another card on top, so that the host meets two entrants.
+					if (o == 1 && deck[0] == opponents[0])
+						swap(deck, 0, 1 + shuffler.nextInt(deck.length - 1));
+				}
+				opponents[o] = deck[dealt++];
+			}
+			// The host sits in seat m % 3, the opponents in the other two.
+			int hostSeat = m % 3;
+			seats[hostSeat] = host;
+			seats[(hostSeat + 1) % 3] = opponents[0];
+			seats[(hostSeat + 2) % 3] = opponents[1];
+
+			// Negative indices keep these seeds apart from the triples of the
+			// full tournament.
+			SplittableRandom random = MatchRandom.beginMatch(game.seed, -2 - host, m, -1);
+			int rounds = game.roundsOfMatch(random);
+			ThreePrisonersDilemma.Player A = players.player(0, seats[0]);
+			ThreePrisonersDilemma.Player B = players.player(1, seats[1]);
+			ThreePrisonersDilemma.Player C = players.player(2, seats[2]);
+			PackedHistory[] moves = row.moves != null ? new PackedHistory[3] : null;
+			float[] matchResults = game.playMatch(A, B, C, rounds, moves);
+			for (int s=0; s<3; s++) {
+				row.seats[3*m+s] = seats[s];
+				row.scores[3*m+s] = matchResults[s];
+			}
+			row.rounds[m] = rounds;
+			if (row.moves != null)
+				row.moves[m] = moves;
+		}
+		return row;
+	}
+
+	private static void shuffle(int[] deck, SplittableRandom random) {
+		for (int d=deck.length-1; d>0; d--)
+			swap(deck, d, random.nextInt(d + 1));
+	}
+
+	private static void swap(int[] deck, int d, int e) {
+		int t = deck[d];
+		deck[d] = deck[e];
+		deck[e] = t;
+	}
+
+	void merge(Row row) {
+		float[] matchResults = new float[3];
+		for (int m=0; m<row.rounds.length; m++) {
+			for (int s=0; s<3; s++)
+				matchResults[s] = row.scores[3*m+s];
+			int i = row.seats[3*m], j = row.seats[3*m+1], k = row.seats[3*m+2];
+			scores.match(i, j, k, matchResults);
+			if (game.results != null)
+				game.results.match(i, j, k, row.rounds[m], matchResults);
+			if (row.moves != null)
+				game.moveLog.write(i, j, k, row.rounds[m], row.moves[m]);
+		}
+	}
+
+	// Half the width of the 95% confidence interval of a player's mean score.
+	double halfWidth(int which) {
+		long n = scores.matches[which];
+		if (n < 2)
+			return Double.POSITIVE_INFINITY;
+		return Z95 * Math.sqrt(scores.variance(which) / n);
+	}
+
+	void printResults() {
+		int numPlayers = game.numPlayers;
+		int[] sortedOrder = scores.ranking();
+
+		int ties = 0;
+		for (int r=1; r<numPlayers; r++) {
+			int above = sortedOrder[r-1], below = sortedOrder[r];
+			if (scores.mean(above) - halfWidth(above) <= scores.mean(below) + halfWidth(below))
+				ties++;
+		}
+
+		if (game.verbose) System.out.println();
+		System.out.println("Sampled Tournament Results (seed " + game.seed + ", "
+				+ matchesPerPlayer + " matches hosted per player)");
+		for (int r=0; r<numPlayers; r++) {
+			int which = sortedOrder[r];
+			System.out.printf("%s: %.4f +- %.4f points per match (%d matches)%n",
+					game.names[which], scores.mean(which), halfWidth(which), scores.matches[which]);
+		}
+		System.out.println(ties + " of " + (numPlayers - 1)
+				+ " neighbouring pairs have overlapping 95% intervals.");
+		System.out.println();
+		scores.printBreakdown();
+	}
+}
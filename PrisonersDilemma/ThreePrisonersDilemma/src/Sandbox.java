@@ -0,0 +1,277 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Sandbox keeps one misbehaving strategy from taking the tournament down with
+ it. Without it, a selectAction that throws or returns something other than
+ 0 or 1 stops the tournament, and one that never returns hangs it.
+
+ With a sandbox set on the game, a player forfeits the match when its
+ selectAction throws, returns anything but 0 or 1, or runs past the time
+ budget of a move. It is not asked again for the rest of the match, during
+ which it defects, and it scores 0 for the match; the other two players keep
+ the scores they earn. Forfeits are counted per strategy and reason.
+
+ Strategies run in one of two ways:
+ - inline, on the thread playing the match, as without a sandbox. A call
+   costs two ordered stores and a load on top of selectAction itself. A
+   watchdog thread looks at every playing thread once per budget; a call it
+   finds in progress twice, with the same call count, and whose thread has
+   used more than the budget of CPU time in between, forfeits when it
+   returns. Counting CPU time rather than wall time keeps a thread that was
+   merely descheduled or stopped for garbage collection from being charged;
+   a call that blocks instead of computing is caught once it has taken
+   WALL_BUDGETS budgets of wall time.
+   A call that never returns can't be stopped this way; the watchdog reports
+   it so it can be isolated.
+ - isolated, for the strategies named when the sandbox is made: every call
+   goes to a thread of its own and is abandoned if it misses its deadline,
+   so even an endless loop only costs its player the match. The hand-off
+   costs microseconds per call, so this is for untrusted code only. An
+   abandoned call is interrupted, but one that ignores that keeps its
+   (daemon) thread until the JVM exits; close() reports how many did.
+
+ A guard is dropped once its thread has ended, along with its isolated
+ thread. close() stops the watchdog and every isolated thread when the
+ tournament is over; the sandbox can't be used after that.
+
+ A forfeit for time depends on the machine and how busy it is, so under a
+ sandbox the MatchCache is not used: every match is played and times its
+ own moves, rather than replaying a forfeit from another match. */
+class Sandbox {
+
+	// What Guard.play returns for a forfeited move.
+	static final int FORFEIT = -1;
+
+	// A call that takes this many budgets of wall time overruns, whatever its CPU time.
+	static final int WALL_BUDGETS = 100;
+
+	// The watchdog reports a call stuck for this many budgets.
+	static final int STUCK_BUDGETS = 1000;
+
+	final long budgetNanos;
+	final Set<String> isolated;
+
+	private final List<Guard> guards = new CopyOnWriteArrayList<>();
+	// The threads of isolated calls that missed their deadline.
+	private final List<Thread> abandoned = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Guard> guard = ThreadLocal.withInitial(this::newGuard);
+	private final Map<String, LongAdder> forfeits = new ConcurrentHashMap<>();
+	private final Map<Object, Boolean> isolatedStrategies = new ConcurrentHashMap<>();
+	private Thread watchdog;
+
+	/* budgetNanos is the time a move may take, isolated the names of the
+	 strategies to run on threads of their own. */
+	Sandbox(long budgetNanos, Set<String> isolated) {
+		if (budgetNanos <= 0)
+			throw new IllegalArgumentException("The time budget must be positive, got " + budgetNanos + " ns");
+		this.budgetNanos = budgetNanos;
+		this.isolated = Collections.unmodifiableSet(isolated);
+	}
+
+	// The guard of the calling thread.
+	Guard guard() {
+		return guard.get();
+	}
+
+	private synchronized Guard newGuard() {
+		Guard g = new Guard();
+		guards.add(g);
+		if (watchdog == null) {
+			watchdog = new Thread(this::watch, "sandbox-watchdog");
+			watchdog.setDaemon(true);
+			watchdog.start();
+		}
+		return g;
+	}
+
+	// Runs the selectAction calls of one thread.
+	final class Guard {
+		// Odd while a call is in progress: bumped before and after every call.
+		private final AtomicLong calls = new AtomicLong();
+		private long count;
+		// The count of the last call the watchdog caught running over time.
+		private volatile long overran = -1;
+		private ThreePrisonersDilemma.Player current;
+		private final Thread owner = Thread.currentThread();
+
+		// Only touched by the watchdog.
+		private long seenCalls, seenCpuTime, seenTime;
+		private int seenTicks;
+
+		private ExecutorService thread;
+		private Thread isolatedThread;
+
+		/* An inline call goes enter(), selectAction, then leave() with the move,
+		 or threw() if selectAction threw. The engine makes the call itself, so
+		 that each seat keeps a call site of its own for the JIT to inline. */
+		void enter(ThreePrisonersDilemma.Player player) {
+			current = player;
+			calls.lazySet(++count);
+		}
+
+		// The move, or FORFEIT.
+		int leave(ThreePrisonersDilemma.Player player, int move) {
+			calls.lazySet(++count);
+			if (overran == count - 1)
+				return forfeit(player, "over time");
+			return check(player, move);
+		}
+
+		int threw(ThreePrisonersDilemma.Player player, Throwable e) {
+			calls.lazySet(++count);
+			return forfeit(player, "threw " + e.getClass().getSimpleName());
+		}
+
+		// The move of a player isolated on a thread of its own, or FORFEIT.
+		int playIsolated(ThreePrisonersDilemma.Player player, int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+			if (thread == null)
+				thread = Executors.newSingleThreadExecutor(r -> {
+					Thread t = new Thread(r, "sandbox-" + player.name());
+					t.setDaemon(true);
+					isolatedThread = t;
+					return t;
+				});
+			// The call can outlive the round, so it gets copies of the histories.
+			int[] my = Arrays.copyOf(myHistory, n), opp1 = Arrays.copyOf(oppHistory1, n), opp2 = Arrays.copyOf(oppHistory2, n);
+			Future<Integer> move = thread.submit(() -> player.selectAction(n, my, opp1, opp2));
+			try {
+				return check(player, move.get(budgetNanos, TimeUnit.NANOSECONDS));
+			} catch (TimeoutException e) {
+				// The call may never return: leave its thread behind and start another.
+				move.cancel(true);
+				if (isolatedThread != null)
+					abandoned.add(isolatedThread);
+				shutdown();
+				return forfeit(player, "over time");
+			} catch (ExecutionException e) {
+				return forfeit(player, "threw " + e.getCause().getClass().getSimpleName());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for " + player.name(), e);
+			}
+		}
+
+		private void shutdown() {
+			if (thread != null)
+				thread.shutdownNow();
+			thread = null;
+			isolatedThread = null;
+		}
+
+		private int check(ThreePrisonersDilemma.Player player, int move) {
+			if ((move & ~1) != 0)
+				return forfeit(player, "returned " + move);
+			return move;
+		}
+	}
+
+	// Whether the player's strategy runs on a thread of its own.
+	boolean isolates(ThreePrisonersDilemma.Player player) {
+		if (isolated.isEmpty())
+			return false;
+		Object strategy = player.strategy();
+		Boolean isolate = isolatedStrategies.get(strategy);
+		if (isolate == null) {
+			isolate = isolated.contains(player.name());
+			isolatedStrategies.put(strategy, isolate);
+		}
+		return isolate;
+	}
+
+	private int forfeit(ThreePrisonersDilemma.Player player, String reason) {
+		forfeits.computeIfAbsent(player.name() + " " + reason, k -> new LongAdder()).increment();
+		return FORFEIT;
+	}
+
+	// Flags every inline call that has used a budget of CPU time since it was first seen.
+	private void watch() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		boolean cpuTime = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+		while (true) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(budgetNanos);
+			} catch (InterruptedException e) {
+				return;
+			}
+			for (Guard g : guards) {
+				if (!g.owner.isAlive()) {
+					// Its pool has shut down: nothing it ran can still be going.
+					guards.remove(g);
+					g.shutdown();
+					continue;
+				}
+				long c = g.calls.get();
+				long now = System.nanoTime();
+				long used = cpuTime ? threads.getThreadCpuTime(g.owner.getId()) : now;
+				if ((c & 1) == 1 && c == g.seenCalls) {
+					if (used - g.seenCpuTime >= budgetNanos || now - g.seenTime >= WALL_BUDGETS * budgetNanos)
+						g.overran = c;
+					if (++g.seenTicks == STUCK_BUDGETS)
+						System.err.println("Sandbox: " + g.current.name() + " has been in selectAction for "
+								+ STUCK_BUDGETS + " budgets; isolate it to get the tournament going again.");
+				} else {
+					g.seenCalls = c;
+					g.seenCpuTime = used;
+					g.seenTime = now;
+					g.seenTicks = 0;
+				}
+			}
+		}
+	}
+
+	/* Stops the watchdog and the isolated threads of every guard, and warns
+	 about abandoned calls that are still running. Call it once the
+	 tournament is over. */
+	synchronized void close() {
+		if (watchdog != null)
+			watchdog.interrupt();
+		watchdog = null;
+		for (Guard g : guards)
+			g.shutdown();
+		guards.clear();
+		int running = 0;
+		for (Thread t : abandoned)
+			if (t.isAlive()) {
+				t.interrupt();
+				running++;
+			}
+		abandoned.clear();
+		if (running > 0)
+			System.err.println("Sandbox: " + running + " abandoned selectAction calls are still running.");
+	}
+
+	// The number of forfeits, by strategy and reason.
+	Map<String, Long> forfeits() {
+		Map<String, Long> counts = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> e : forfeits.entrySet())
+			counts.put(e.getKey(), e.getValue().sum());
+		return counts;
+	}
+
+	void printForfeits() {
+		Map<String, Long> counts = forfeits();
+		if (counts.isEmpty())
+			return;
+		System.out.println();
+		System.out.println("Forfeited matches:");
+		for (Map.Entry<String, Long> e : counts.entrySet())
+			System.out.println(e.getKey() + ": " + e.getValue());
+	}
+}
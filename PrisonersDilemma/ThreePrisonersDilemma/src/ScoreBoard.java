@@ -0,0 +1,159 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ ScoreBoard adds up the scores of a tournament, match by match.
+
+ Totals used to be a float per entrant, which keeps 24 bits: after a hundred
+ thousand matches every addition rounds away the third decimal place, enough
+ to swap two players a few points apart. The board keeps each total as a
+ double with a running compensation term (Neumaier's variant of Kahan
+ summation), which is exact to the last bit of a double for any realistic
+ tournament and costs a handful of additions per score.
+
+ Besides the total it keeps, per entrant, the number of matches played and
+ the mean and variance of its match scores (Welford's method), so that
+ entrants that played different numbers of matches can be compared fairly.
+ Per strategy it keeps the mean score against each opponent strategy: a
+ match against a u and a v counts once towards u and once towards v.
+
+ Entrants are kept ranked by mean score in a Leaderboard as the scores come
+ in, and every reportEvery matches the board prints the current leaders.
+
+ Scores must be added in the same order to get the same bits, which is why
+ the parallel engines merge their rows in order. */
+class ScoreBoard {
+
+	final String[] names;
+	final String[] types;     // the distinct strategy names, in order of first entry
+	final int[] typeOf;       // the strategy id of each entrant
+
+	final long[] matches;
+	private final double[] sum, compensation;
+	private final double[] mean, squares;
+	private final double[][] versusSum;
+	private final long[][] versusCount;
+
+	final Leaderboard leaderboard;
+
+	int reportEvery = 0; // set reportEvery > 0 to print the standings every that many matches
+	int reportTop = 3;   // how many leaders each report lists
+	private long matchesAdded;
+
+	ScoreBoard(String[] names) {
+		this.names = names;
+		int numPlayers = names.length;
+		typeOf = new int[numPlayers];
+		Map<String, Integer> ids = new LinkedHashMap<>();
+		for (int which=0; which<numPlayers; which++) {
+			Integer id = ids.get(names[which]);
+			if (id == null) {
+				id = ids.size();
+				ids.put(names[which], id);
+			}
+			typeOf[which] = id;
+		}
+		types = ids.keySet().toArray(new String[0]);
+		matches = new long[numPlayers];
+		sum = new double[numPlayers];
+		compensation = new double[numPlayers];
+		mean = new double[numPlayers];
+		squares = new double[numPlayers];
+		versusSum = new double[types.length][types.length];
+		versusCount = new long[types.length][types.length];
+		leaderboard = new Leaderboard(numPlayers);
+	}
+
+	// Adds the scores of match (i, j, k).
+	void match(int i, int j, int k, float[] matchResults) {
+		add(i, j, k, matchResults[0]);
+		add(j, k, i, matchResults[1]);
+		add(k, i, j, matchResults[2]);
+		if (reportEvery > 0 && ++matchesAdded % reportEvery == 0)
+			printStandings();
+	}
+
+	// Adds one score of an entrant that played against opp1 and opp2.
+	void add(int which, int opp1, int opp2, double score) {
+		double s = sum[which], t = s + score;
+		if (Math.abs(s) >= Math.abs(score))
+			compensation[which] += (s - t) + score;
+		else
+			compensation[which] += (score - t) + s;
+		sum[which] = t;
+
+		long n = ++matches[which];
+		double delta = score - mean[which];
+		mean[which] += delta / n;
+		squares[which] += delta * (score - mean[which]);
+		leaderboard.update(which, mean[which]);
+
+		int type = typeOf[which];
+		versusSum[type][typeOf[opp1]] += score;
+		versusCount[type][typeOf[opp1]]++;
+		versusSum[type][typeOf[opp2]] += score;
+		versusCount[type][typeOf[opp2]]++;
+	}
+
+	int size() {
+		return names.length;
+	}
+
+	double total(int which) {
+		return sum[which] + compensation[which];
+	}
+
+	double[] totals() {
+		double[] totals = new double[names.length];
+		for (int which=0; which<totals.length; which++)
+			totals[which] = total(which);
+		return totals;
+	}
+
+	double mean(int which) {
+		return mean[which];
+	}
+
+	// The sample variance of an entrant's match scores.
+	double variance(int which) {
+		long n = matches[which];
+		return n < 2 ? 0 : squares[which] / (n - 1);
+	}
+
+	// The mean score of a strategy in matches where the other one took part,
+	// or NaN if they never met.
+	double versus(int type, int opponentType) {
+		long n = versusCount[type][opponentType];
+		return n == 0 ? Double.NaN : versusSum[type][opponentType] / n;
+	}
+
+	// The entrants in ranking order, best mean score first.
+	int[] ranking() {
+		return leaderboard.top(names.length);
+	}
+
+	// One line with the leaders so far and where entrant 0, your player, stands.
+	void printStandings() {
+		StringBuilder line = new StringBuilder("After ").append(matchesAdded).append(" matches:");
+		for (int which : leaderboard.top(reportTop))
+			line.append(' ').append(names[which]).append(String.format(" %.4f,", mean[which]));
+		line.append(" entrant 0 (").append(names[0]).append(") ranks ")
+			.append(leaderboard.rank(0) + 1).append(" of ").append(names.length);
+		System.out.println(line);
+	}
+
+	void printBreakdown() {
+		System.out.println("Mean score per match against each opponent strategy:");
+		StringBuilder line = new StringBuilder();
+		for (String type : types)
+			line.append('\t').append(type);
+		System.out.println(line);
+		for (int t=0; t<types.length; t++) {
+			line.setLength(0);
+			line.append(types[t]);
+			for (int u=0; u<types.length; u++)
+				line.append('\t').append(String.format("%.4f", versus(t, u)));
+			System.out.println(line);
+		}
+	}
+}
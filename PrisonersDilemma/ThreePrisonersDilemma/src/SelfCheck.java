@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ SelfCheck plays small tournaments on a fixed seed, each one with a shortcut
+ of the engine on and off, and checks that the results agree. An
+ optimisation that changes a score then shows up on its own, without anyone
+ comparing tournament outputs by eye. It prints one line per check and
+ exits with status 1 if any of them failed:
+
+	java -cp target/classes SelfCheck
+
+ The checks that must agree exactly compare the totals of every entrant
+ bit for bit. */
+class SelfCheck {
+
+	static final long SEED = 7;
+
+	// How many standard errors a Markov expectation may be off the sampled mean.
+	static final double Z_MARKOV = 5;
+
+	int failures;
+
+	void check(String name, boolean passed, String detail) {
+		System.out.println((passed ? "ok      " : "FAILED  ") + name + (detail.isEmpty() ? "" : ": " + detail));
+		if (!passed)
+			failures++;
+	}
+
+	// A game on SEED with every built-in strategy entered copies times.
+	static ThreePrisonersDilemma everyStrategy(int copies) {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		StrategyRegistry field = StrategyRegistry.builtIn();
+		for (String strategy : field.strategies())
+			field.add(strategy, copies);
+		game.setField(field);
+		game.seed = SEED;
+		return game;
+	}
+
+	static ThreePrisonersDilemma defaultField() {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		game.seed = SEED;
+		return game;
+	}
+
+	// The parallel tournament must score exactly as the sequential loop does.
+	void parallelMatchesSequential(String field, ThreePrisonersDilemma game) {
+		double[] sequential = game.playTournament().totals();
+		for (int threads : new int[] {2, 4}) {
+			double[] parallel = new ParallelTournament(game, threads).play().totals();
+			check("parallel on " + threads + " threads, " + field, Arrays.equals(sequential, parallel), "");
+		}
+	}
+
+	// Matches taken from the MatchCache must score exactly as played ones.
+	void cacheMatchesPlaying(String field, ThreePrisonersDilemma game) {
+		double[] cached = game.playTournament().totals();
+		MatchCache cache = game.matchCache;
+		game.matchCache = null;
+		double[] played = game.playTournament().totals();
+		game.matchCache = cache;
+		check("match cache, " + field, Arrays.equals(cached, played), "");
+	}
+
+	/* Matches cut short by the CycleDetector must score exactly as if every
+	 round were played. The matches are long, so that the cycles repeat many
+	 times, and the cache is off, so that every match is played both ways. */
+	void cyclesMatchPlaying(String field, ThreePrisonersDilemma game, int rounds) {
+		game.matchCache = null;
+		game.matchRounds = rounds;
+		double[] detected = game.playTournament().totals();
+		game.detectCycles = false;
+		double[] played = game.playTournament().totals();
+		game.detectCycles = true;
+		check("cycle detection, " + rounds + " rounds, " + field, Arrays.equals(detected, played), "");
+	}
+
+	/* The expected scores the MarkovEvaluator works out must agree with
+	 played matches, up to sampling error. Every triple of the memory-one
+	 strategies, seats in order, is played samples times; each match is
+	 compared with the expectation for its own players and round count, and
+	 the mean difference must be within Z_MARKOV standard errors of 0, or
+	 exactly 0 where the matches have no luck in them. */
+	void markovMatchesSampling(int samples) {
+		ThreePrisonersDilemma game = defaultField();
+		List<String> memoryOne = new ArrayList<>();
+		StrategyRegistry registry = StrategyRegistry.builtIn();
+		for (String strategy : registry.strategies()) {
+			MatchRandom.beginMatch(SEED, 0, 0, 0);
+			if (registry.factory(strategy).create(game).memoryOne() != null)
+				memoryOne.add(strategy);
+		}
+		int n = memoryOne.size(), triples = 0, outside = 0;
+		double worst = 0;
+		String worstTriple = "";
+		for (int t=0; t<n; t++) for (int u=t; u<n; u++) for (int v=u; v<n; v++) {
+			double[][] d = new double[3][samples];
+			for (int s=0; s<samples; s++) {
+				SplittableRandom random = MatchRandom.beginMatch(SEED, t, u * n + v, s);
+				int rounds = game.roundsOfMatch(random);
+				ThreePrisonersDilemma.Player[] players = new ThreePrisonersDilemma.Player[3];
+				int[] types = {t, u, v};
+				for (int seat=0; seat<3; seat++) {
+					MatchRandom.beginSeat(seat);
+					players[seat] = registry.factory(memoryOne.get(types[seat])).create(game);
+				}
+				double[] expected = MarkovEvaluator.expectedScores(players[0].memoryOne(), players[1].memoryOne(),
+						players[2].memoryOne(), rounds, ThreePrisonersDilemma.payoffTable);
+				float[] played = game.scoresOfMatch(players[0], players[1], players[2], rounds);
+				for (int seat=0; seat<3; seat++)
+					d[seat][s] = played[seat] - expected[seat];
+			}
+			triples++;
+			for (int seat=0; seat<3; seat++) {
+				double se = RepeatedTournament.standardError(d[seat]);
+				double mean = RepeatedTournament.mean(d[seat]);
+				// Float scores against double expectations leave a rounding error.
+				double z = Math.abs(mean) < 1e-6 ? 0 : se == 0 ? Double.POSITIVE_INFINITY : Math.abs(mean) / se;
+				if (z > Z_MARKOV)
+					outside++;
+				if (z > worst) {
+					worst = z;
+					worstTriple = memoryOne.get(t) + ", " + memoryOne.get(u) + ", " + memoryOne.get(v) + " seat " + seat;
+				}
+			}
+		}
+		check("Markov scoring, " + triples + " triples of " + memoryOne, outside == 0,
+				String.format("worst %.2f standard errors off (%s)", worst, worstTriple));
+	}
+
+	/* The presets ParameterSearch starts from must play exactly as the
+	 strategies they stand for: ParameterSearch.PRESETS[p] as
+	 INCUMBENTS[p]. Each is put in every seat against every pair of built-in
+	 strategies, at round counts from 1 up, and both versions play the same
+	 match, random numbers and all. */
+	void presetsMatchIncumbents() {
+		ThreePrisonersDilemma game = defaultField();
+		StrategyRegistry registry = StrategyRegistry.builtIn();
+		String[] opponents = registry.strategies();
+		int matches = 0, different = 0;
+		String first = "";
+		for (int p=0; p<ParameterSearch.PRESETS.length; p++) {
+			String[] versions = {ParameterSearch.INCUMBENTS[p], ParameterSearch.PRESETS[p]};
+			for (String y : opponents) for (String z : opponents) for (int seat=0; seat<3; seat++)
+				for (int rounds : new int[] {1, 2, 3, 10, 100, 1000}) {
+					float[][] scores = new float[2][];
+					for (int version=0; version<2; version++) {
+						MatchRandom.beginMatch(SEED, matches, seat, rounds);
+						String[] seats = new String[3];
+						seats[seat] = versions[version];
+						seats[(seat + 1) % 3] = y;
+						seats[(seat + 2) % 3] = z;
+						ThreePrisonersDilemma.Player[] players = new ThreePrisonersDilemma.Player[3];
+						for (int s=0; s<3; s++) {
+							MatchRandom.beginSeat(s);
+							players[s] = registry.factory(seats[s]).create(game);
+						}
+						scores[version] = game.scoresOfMatch(players[0], players[1], players[2], rounds);
+					}
+					matches++;
+					if (!Arrays.equals(scores[0], scores[1]) && different++ == 0)
+						first = String.format("first %s against %s and %s in seat %d, %d rounds", versions[0], y, z, seat, rounds);
+				}
+		}
+		check("parameter presets as " + Arrays.asList(ParameterSearch.INCUMBENTS).subList(0, ParameterSearch.PRESETS.length),
+				different == 0, different == 0 ? matches + " matches" : different + " of " + matches + " matches differ, " + first);
+	}
+
+	public static void main(String[] args) {
+		SelfCheck self = new SelfCheck();
+		self.parallelMatchesSequential("default field", defaultField());
+		self.parallelMatchesSequential("every strategy", everyStrategy(3));
+		self.cacheMatchesPlaying("default field", defaultField());
+		self.cacheMatchesPlaying("every strategy", everyStrategy(3));
+		self.cyclesMatchPlaying("every strategy", everyStrategy(1), 100);
+		self.cyclesMatchPlaying("every strategy", everyStrategy(1), 5000);
+		self.markovMatchesSampling(200);
+		self.presetsMatchIncumbents();
+		System.out.println(self.failures == 0 ? "All checks passed." : self.failures + " checks failed.");
+		System.exit(self.failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ StrategyRegistry knows how to make every strategy by name, and which of them
+ play in the tournament and how many times.
+
+ A strategy is registered once with a factory. The field is then built by
+ adding strategies with a population count, in code or from a file with one
+ "StrategyName count" per line (# starts a comment), and resolved into a flat
+ array with one factory per entrant when the tournament starts. Lookup
+ tables written as in TablePlayer, and parameter sets of ThresholdPlayer,
+ can be listed by name without being registered first.
+
+ Strategies can be looked up from several threads at once, a search
+ naming table strategies from its workers, say, so the factories are kept
+ in a concurrent map; the field itself is only built from one thread. */
+class StrategyRegistry {
+
+	interface Factory {
+		ThreePrisonersDilemma.Player create(ThreePrisonersDilemma game);
+	}
+
+	private final Map<String, Factory> factories = new ConcurrentHashMap<>();
+
+	// The names registered, in order, for messages.
+	private final List<String> registered = new CopyOnWriteArrayList<>();
+
+	private final List<String> fieldNames = new ArrayList<>();
+	private final List<Integer> fieldCounts = new ArrayList<>();
+
+	// The strategies of ThreePrisonersDilemma. Register your own here too.
+	static StrategyRegistry builtIn() {
+		StrategyRegistry registry = new StrategyRegistry();
+		registry.register("NicePlayer", game -> new ThreePrisonersDilemma.NicePlayer());
+		registry.register("NastyPlayer", game -> new ThreePrisonersDilemma.NastyPlayer());
+		registry.register("RandomPlayer", game -> new ThreePrisonersDilemma.RandomPlayer());
+		registry.register("TolerantPlayer", game -> new ThreePrisonersDilemma.TolerantPlayer());
+		registry.register("FreakyPlayer", game -> new ThreePrisonersDilemma.FreakyPlayer());
+		registry.register("T4TPlayer", game -> new ThreePrisonersDilemma.T4TPlayer());
+		registry.register("RX", game -> new ThreePrisonersDilemma.RX());
+		registry.register("RX2", game -> new ThreePrisonersDilemma.RX2());
+		registry.register("RX3", game -> new ThreePrisonersDilemma.RX3());
+		registry.register("RX4", game -> new ThreePrisonersDilemma.RX4());
+		registry.register("Shaun", game -> new ThreePrisonersDilemma.Shaun());
+		return registry;
+	}
+
+	StrategyRegistry register(String name, Factory factory) {
+		if (factories.putIfAbsent(name, factory) != null)
+			throw new IllegalArgumentException("Strategy " + name + " is already registered");
+		registered.add(name);
+		return this;
+	}
+
+	boolean isRegistered(String name) {
+		return factories.containsKey(name);
+	}
+
+	// The factory of the named strategy. A table strategy (see TablePlayer) or
+	// a parameter set of ThresholdPlayer is kept the first time it is named, so
+	// that every lookup plays the same strategy.
+	Factory factory(String name) {
+		Factory factory = factories.get(name);
+		if (factory == null && (TablePlayer.Table.isSpec(name) || ThresholdPlayer.Params.isSpec(name)))
+			factory = factories.computeIfAbsent(name, StrategyRegistry::specFactory);
+		if (factory == null)
+			throw new IllegalArgumentException("Unknown strategy " + name + ", expected one of " + registered);
+		return factory;
+	}
+
+	private static Factory specFactory(String name) {
+		if (TablePlayer.Table.isSpec(name)) {
+			TablePlayer.Table table = TablePlayer.Table.parse(name);
+			return game -> new TablePlayer(table);
+		}
+		ThresholdPlayer.Params params = ThresholdPlayer.Params.parse(name);
+		return game -> new ThresholdPlayer(params);
+	}
+
+	// Enters count copies of the named strategy into the field.
+	StrategyRegistry add(String name, int count) {
+		factory(name);
+		if (count < 0)
+			throw new IllegalArgumentException("Negative population for " + name);
+		fieldNames.add(name);
+		fieldCounts.add(count);
+		return this;
+	}
+
+	// Replaces the field with the one described in the given file.
+	StrategyRegistry loadField(Path file) throws IOException {
+		fieldNames.clear();
+		fieldCounts.clear();
+		int lineNumber = 0;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			lineNumber++;
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+			String[] parts = line.split("\\s+");
+			try {
+				if (parts.length > 2)
+					throw new IllegalArgumentException("Expected \"StrategyName count\"");
+				add(parts[0], parts.length == 2 ? Integer.parseInt(parts[1]) : 1);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+		return this;
+	}
+
+	// The number of entrants in the field.
+	int size() {
+		int size = 0;
+		for (int count : fieldCounts)
+			size += count;
+		return size;
+	}
+
+	// Every strategy registered, in the order it was registered.
+	String[] strategies() {
+		return registered.toArray(new String[0]);
+	}
+
+	// The strategies in the field, in the order they were added.
+	String[] fieldStrategies() {
+		return fieldNames.toArray(new String[0]);
+	}
+
+	// How many copies of each of fieldStrategies() play.
+	int[] fieldCounts() {
+		int[] counts = new int[fieldCounts.size()];
+		for (int s=0; s<counts.length; s++)
+			counts[s] = fieldCounts.get(s);
+		return counts;
+	}
+
+	// One factory per entrant, in the order the strategies were added.
+	Factory[] resolve() {
+		Factory[] entrants = new Factory[size()];
+		int which = 0;
+		for (int s=0; s<fieldNames.size(); s++) {
+			Factory factory = factories.get(fieldNames.get(s));
+			for (int c=0; c<fieldCounts.get(s); c++)
+				entrants[which++] = factory;
+		}
+		return entrants;
+	}
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ StrategySearch looks for the best table strategy (see TablePlayer) to enter
+ as your player, entrant 0, against the rest of the field.
+
+ Every candidate plays the matches entrant 0 plays in the tournament against
+ two other entrants: (0, j, k) for 1 <= j <= k, in the first seat, with the
+ same match seeds and round counts as runTournament. Matches of entrant 0
+ with copies of itself are left out, since they depend on the candidate
+ twice. A candidate's score is its mean over these matches, which ranks the
+ candidates as the tournament would; the strategy entrant 0 plays now is
+ scored the same way, to beat.
+
+ The candidates are every memory-one table, 2 x 2^8 = 512 of them, and as
+ many memory-two tables drawn at random as asked for, out of 4 x 2^64. All
+ candidates face the same matches, so differences between them are not luck
+ of the draw. Table players are deterministic, so their matches with
+ deterministic opponents are played once per round count (MatchCache), and
+ only matches with a stochastic opponent are played in full. The
+ candidates are scored on several threads, one candidate per task. */
+class StrategySearch {
+
+	final ThreePrisonersDilemma game;
+	final int threads;
+
+	int memoryTwo = 0; // random memory-two tables tried besides every memory-one table
+	int top = 10;      // how many of the best candidates to print
+
+	StrategySearch(ThreePrisonersDilemma game, int threads) {
+		this.game = game;
+		this.threads = threads;
+	}
+
+	// Every memory-one table, then memoryTwo random memory-two tables.
+	List<TablePlayer.Table> candidates() {
+		List<TablePlayer.Table> tables = new ArrayList<>();
+		for (int opening=0; opening<2; opening++)
+			for (int moves=0; moves<256; moves++)
+				tables.add(new TablePlayer.Table(1, opening, new long[] {moves}));
+		SplittableRandom random = new SplittableRandom(MatchRandom.matchSeed(game.seed, -3, 0, 0));
+		for (int t=0; t<memoryTwo; t++)
+			tables.add(TablePlayer.Table.random(2, random));
+		return tables;
+	}
+
+	/* The mean score of a strategy as entrant 0 against every pair of other
+	 entrants. Safe to call from several threads at once. */
+	double score(StrategyRegistry.Factory strategy) {
+		PlayerPool players = new PlayerPool(game);
+		int numPlayers = game.numPlayers;
+		double sum = 0;
+		long matches = 0;
+		for (int j=1; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
+			SplittableRandom random = MatchRandom.beginMatch(game.seed, 0, j, k);
+			int rounds = game.roundsOfMatch(random);
+			MatchRandom.beginSeat(0);
+			ThreePrisonersDilemma.Player A = strategy.create(game);
+			ThreePrisonersDilemma.Player B = players.player(1, j);
+			ThreePrisonersDilemma.Player C = players.player(2, k);
+			sum += game.playMatch(A, B, C, rounds)[0];
+			matches++;
+		}
+		return sum / matches;
+	}
+
+	// The score of each table, in the order given.
+	double[] score(List<TablePlayer.Table> tables) {
+		double[] scores = new double[tables.size()];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Double>> results = new ArrayList<>();
+			for (TablePlayer.Table table : tables)
+				results.add(pool.submit(() -> score(game -> new TablePlayer(table))));
+			for (int t=0; t<scores.length; t++)
+				scores[t] = results.get(t).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while scoring tables", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A match failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return scores;
+	}
+
+	/* Searches the tables for the best entrant 0 of the field of
+	 ThreePrisonersDilemma. Options: "-memory2 K" also tries K random
+	 memory-two tables, "-top T" prints the best T (default 10), and "-seed S",
+	 "-rounds R", "-threads N", "-field F", "-plugins D" and "-exact" as for
+	 ThreePrisonersDilemma. */
+	public static void main(String[] args) throws IOException {
+		ThreePrisonersDilemma game = new ThreePrisonersDilemma();
+		int threads = Runtime.getRuntime().availableProcessors();
+		int memoryTwo = 0, top = 10;
+		for (int i=0; i+1<args.length; i++)
+			if (args[i].equals("-plugins"))
+				PluginLoader.load(Paths.get(args[i+1]), game.field);
+		for (int i=0; i+1<args.length; i++) {
+			if (args[i].equals("-memory2"))
+				memoryTwo = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-top"))
+				top = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-seed"))
+				game.seed = Long.parseLong(args[i+1]);
+			if (args[i].equals("-rounds"))
+				game.matchRounds = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-field"))
+				game.setField(game.field.loadField(Paths.get(args[i+1])));
+		}
+
+		if (Arrays.asList(args).contains("-exact"))
+			game.markov = new MarkovEvaluator();
+
+		StrategySearch search = new StrategySearch(game, Math.max(threads, 1));
+		search.memoryTwo = memoryTwo;
+		search.top = top;
+		long start = System.nanoTime();
+		double current = search.score(game.entrants[0]);
+		List<TablePlayer.Table> tables = search.candidates();
+		double[] scores = search.score(tables);
+		System.out.println("Scored " + tables.size() + " tables against " + (game.numPlayers - 1) + " entrants in "
+				+ (System.nanoTime() - start) / 1000000 + " ms (seed " + game.seed + ")");
+		System.out.println(String.format("%s, entrant 0 now: %.4f", game.names[0], current));
+
+		Integer[] order = new Integer[tables.size()];
+		for (int t=0; t<order.length; t++)
+			order[t] = t;
+		Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+		for (int r=0; r<Math.min(top, order.length); r++)
+			System.out.println(String.format("%s: %.4f", tables.get(order[r]).name, scores[order[r]]));
+	}
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ TablePlayer plays a strategy written down as a lookup table instead of
+ Java code: a memory-k strategy, whose move depends only on the joint moves
+ of the last k rounds.
+
+ The state after round n is the joint action codes of the last k rounds as
+ seen from the player's seat (see PayoffTable.code), the latest in the low
+ three bits:
+
+	state = code(n-1) | code(n-2) << 3 | ... | code(n-k) << 3(k-1)
+
+ and the table has one move per state, 2^(3k) of them. The first k rounds,
+ before there is a full state, are played from an opening of k moves. For
+ k = 1 that is 1 + 8 bits, so there are 512 memory-one strategies; RX4 and
+ Shaun are both T1:0:00010111. A table is written
+
+	T<k>:<opening>:<table>
+
+ with one 0 or 1 per move, the opening in round order and the table in state
+ order, and can be used as a strategy name anywhere a field is listed.
+
+ The interpreter builds the state from the histories and looks up a bit, so a
+ move costs k array reads and a shift. Table players are deterministic,
+ finite-state and stateless, and memory-one tables are memory-one players
+ too, so their matches are cached, cut short by the cycle detector, or
+ scored by MarkovEvaluator like those of any other such strategy. */
+class TablePlayer extends ThreePrisonersDilemma.Player {
+
+	// Tables are kept in longs, which limits k: 2^(3k) bits is 8 longs for k = 3.
+	static final int MAX_MEMORY = 3;
+
+	/* A table strategy. Players of one table share it, and it tells their
+	 strategy apart from that of other tables (see Player.strategy). */
+	static final class Table {
+		final int memory;
+		final int opening;    // bit n is the move in round n, for n < memory
+		final long[] moves;   // bit s is the move in state s
+		final String name;
+
+		Table(int memory, int opening, long[] moves) {
+			if (memory < 1 || memory > MAX_MEMORY)
+				throw new IllegalArgumentException("Table memory must be 1 to " + MAX_MEMORY + ", got " + memory);
+			this.memory = memory;
+			this.opening = opening & ((1 << memory) - 1);
+			this.moves = Arrays.copyOf(moves, words(memory));
+			int states = 1 << (3 * memory);
+			if (states < 64)
+				this.moves[0] &= (1L << states) - 1;
+			StringBuilder name = new StringBuilder("T").append(memory).append(':');
+			for (int n=0; n<memory; n++)
+				name.append(this.opening >> n & 1);
+			name.append(':');
+			for (int s=0; s<states; s++)
+				name.append(move(s));
+			this.name = name.toString();
+		}
+
+		int move(int state) {
+			return (int) (moves[state >>> 6] >>> (state & 63)) & 1;
+		}
+
+		// A table with every opening move and table entry drawn at random.
+		static Table random(int memory, SplittableRandom random) {
+			long[] moves = new long[words(memory)];
+			for (int w=0; w<moves.length; w++)
+				moves[w] = random.nextLong();
+			return new Table(memory, random.nextInt(), moves);
+		}
+
+		static boolean isSpec(String name) {
+			return name.startsWith("T") && name.indexOf(':') > 0;
+		}
+
+		// Reads a table written as by name.
+		static Table parse(String spec) {
+			String[] parts = spec.split(":");
+			if (parts.length != 3 || !parts[0].startsWith("T"))
+				throw new IllegalArgumentException("Expected a table T<k>:<opening>:<table>, got " + spec);
+			int memory = Integer.parseInt(parts[0].substring(1));
+			if (memory < 1 || memory > MAX_MEMORY)
+				throw new IllegalArgumentException("Table memory must be 1 to " + MAX_MEMORY + ", got " + spec);
+			if (parts[1].length() != memory || parts[2].length() != 1 << (3 * memory))
+				throw new IllegalArgumentException("A memory-" + memory + " table needs " + memory + " opening moves and "
+						+ (1 << (3 * memory)) + " table moves, got " + spec);
+			int opening = 0;
+			for (int n=0; n<memory; n++)
+				opening |= bit(parts[1], n) << n;
+			long[] moves = new long[words(memory)];
+			for (int s=0; s<parts[2].length(); s++)
+				moves[s >>> 6] |= (long) bit(parts[2], s) << (s & 63);
+			return new Table(memory, opening, moves);
+		}
+
+		private static int bit(String moves, int i) {
+			char c = moves.charAt(i);
+			if (c != '0' && c != '1')
+				throw new IllegalArgumentException("Moves are 0 or 1, got '" + c + "' in " + moves);
+			return c - '0';
+		}
+
+		private static int words(int memory) {
+			return Math.max(1, (1 << (3 * memory)) >>> 6);
+		}
+
+		// Defect probabilities as in Player.memoryOne, for a memory-one table.
+		double[] memoryOne() {
+			if (memory != 1)
+				return null;
+			double[] p = new double[9];
+			for (int s=0; s<8; s++)
+				p[s] = move(s);
+			p[8] = opening & 1;
+			return p;
+		}
+	}
+
+	final Table table;
+	private final double[] memoryOne;
+
+	TablePlayer(Table table) {
+		this.table = table;
+		memoryOne = table.memoryOne();
+	}
+
+	int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+		int memory = table.memory;
+		if (n < memory)
+			return table.opening >> n & 1;
+		int state = 0;
+		for (int r=n-memory; r<n; r++)
+			state = (state << 3) | (myHistory[r] << 2) | (oppHistory1[r] << 1) | oppHistory2[r];
+		return table.move(state);
+	}
+
+	int lookback() {
+		return table.memory;
+	}
+
+	boolean deterministic() {
+		return true;
+	}
+
+	boolean finiteState() {
+		return true;
+	}
+
+	boolean stateless() {
+		return true;
+	}
+
+	double[] memoryOne() {
+		return memoryOne;
+	}
+
+	String name() {
+		return table.name;
+	}
+
+	Object strategy() {
+		return table;
+	}
+}
@@ -1,3 +1,13 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
 public class ThreePrisonersDilemma {
 	
 	/* 
@@ -20,6 +30,10 @@ public class ThreePrisonersDilemma {
 		{{8,5},  //payoffs when first player defects, second coops
 	     {5,2}}};//payoffs when first and second players defect
 	
+	// The same payoffs flattened for the match loop (see PayoffTable). If you
+	// change payoff, rebuild this with PayoffTable.of(payoff).
+	static PayoffTable payoffTable = PayoffTable.of(payoff);
+	
 	/* 
 	 So payoff[i][j][k] represents the payoff to player 1 when the first
 	 player's action is i, the second player's action is j, and the
@@ -32,80 +46,227 @@ public class ThreePrisonersDilemma {
 	 opponent did) and must compute the next action.  */
 	
 	
-	abstract class Player {
+	static final int FULL_HISTORY = Integer.MAX_VALUE;
+	
+	/* Player and the strategies below are static nested classes: a player
+	 needs nothing from the game that made it, so none of them carries a
+	 reference to one, and a stateless player can be kept and handed to any
+	 match (see PlayerPool). A strategy written as an inner class still works,
+	 made with game.new. */
+	static abstract class Player {
+		// Random numbers for this player, drawn from its own stream of the match
+		// seed (see MatchRandom). Use this rather than Math.random().
+		final SplittableRandom random = MatchRandom.split();
+		
+		// Running counts of the match as seen from this player's seat, updated
+		// by the engine every round (see MatchStats). Prefer these to rescanning
+		// the histories, which costs O(n) on every call.
+		MatchStats.View stats;
+		
 		// This procedure takes in the number of rounds elapsed so far (n), and 
 		// the previous plays in the match, and returns the appropriate action.
+		//
+		// The contract on the histories, which the engine does not check:
+		// - they are the engine's own buffers, not copies, shared with the
+		//   other two seats and the cycle detector (see MatchHistory);
+		// - only entries 0 to n-1 are rounds of this match. The arrays are
+		//   usually longer, so length is not the number of rounds, and the
+		//   entries past n are zeros or rounds about to be overwritten;
+		// - they are read-only. A write changes the rounds the other seats, and
+		//   this one later on, are shown. The scores come from stats, which
+		//   are kept apart, so the match is then played on a history that is
+		//   not its own.
+		// Strategies loaded as plugins can't be trusted with that, so they get
+		// histories of their own instead (see PluginLoader).
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			throw new RuntimeException("You need to override the selectAction method.");
 		}
 		
+		// The number of most recent rounds that selectAction reads from the
+		// histories. Players that need no more than this get a sliding window
+		// in long matches: the histories then hold only the last rounds, with
+		// n counting the rounds kept in the window rather than the whole match
+		// (use stats.rounds() for that). n is still 0 only in the first round.
+		int lookback() {
+			return FULL_HISTORY;
+		}
+		
+		// Whether this player's moves depend on nothing but the match so far: no
+		// random numbers, and nothing carried over from outside the match.
+		// Matches between three deterministic players are played only once
+		// per round count and then reused (see MatchCache).
+		boolean deterministic() {
+			return false;
+		}
+		
+		// Whether this player's move depends on nothing but the last lookback()
+		// rounds of the histories, once past the first round: not on n, stats or
+		// anything it remembers. Matches between three deterministic players
+		// that are finite-state are only played until they start repeating
+		// themselves, and the rest is worked out (see CycleDetector).
+		boolean finiteState() {
+			return false;
+		}
+		
+		// For a memory-one player, whose move depends on nothing but the last
+		// round, if only through random numbers: the probability that it
+		// defects after each joint last round, at index PayoffTable.code(my,
+		// opp1, opp2) of its own last move and its opponents', and in the first
+		// round, at index 8. Triples of memory-one players can be scored by
+		// their exact expected payoff instead of played (see MarkovEvaluator).
+		double[] memoryOne() {
+			return null;
+		}
+		
+		// Whether this player keeps nothing from one match to the next, apart
+		// from the stats the engine hands it, and draws no random numbers. A
+		// stateless player is made once and reused for every match it plays.
+		boolean stateless() {
+			return false;
+		}
+		
 		// Used to extract the name of this player class.
-		final String name() {
+		String name() {
 			String result = getClass().getName();
 			return result.substring(result.indexOf('$')+1);
 		}
+		
+		// What tells this player's strategy apart from the others in the tables
+		// that keep something per strategy (MatchCache, Metrics, Sandbox). Every
+		// class is one strategy; only adapters that play several, like the
+		// plugins of PluginLoader, need to say otherwise.
+		Object strategy() {
+			return getClass();
+		}
 	}
 	
 	/* Here are four simple strategies: */
 	
-	class NicePlayer extends Player {
+	static class NicePlayer extends Player {
 		//NicePlayer always cooperates
+		static final double[] MEMORY_ONE = {0, 0, 0, 0, 0, 0, 0, 0, 0};
+		
+		int lookback() {
+			return 0;  //never looks at the history
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean finiteState() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			return 0; 
 		}
 	}
 	
-	class NastyPlayer extends Player {
+	static class NastyPlayer extends Player {
 		//NastyPlayer always defects
+		static final double[] MEMORY_ONE = {1, 1, 1, 1, 1, 1, 1, 1, 1};
+		
+		int lookback() {
+			return 0;  //never looks at the history
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean finiteState() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			return 1; 
 		}
 	}
 	
-	class RandomPlayer extends Player {
+	static class RandomPlayer extends Player {
 		//RandomPlayer randomly picks his action each time
+		static final double[] MEMORY_ONE = {0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5};
+		
+		int lookback() {
+			return 0;  //never looks at the history
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-			if (Math.random() < 0.5)
+			if (random.nextDouble() < 0.5)
 				return 0;  //cooperates half the time
 			else
 				return 1;  //defects half the time
 		}
 	}
 	
-	class TolerantPlayer extends Player {
+	static class TolerantPlayer extends Player {
 		//TolerantPlayer looks at his opponents' histories, and only defects
 		//if at least half of the other players' actions have been defects
+		int lookback() {
+			return 0;  //only needs the counts in stats
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-			int opponentCoop = 0;
-			int opponentDefect = 0;
-			for (int i=0; i<n; i++) {
-				if (oppHistory1[i] == 0)
-					opponentCoop = opponentCoop + 1;
-				else
-					opponentDefect = opponentDefect + 1;
-			}
-			for (int i=0; i<n; i++) {
-				if (oppHistory2[i] == 0)
-					opponentCoop = opponentCoop + 1;
-				else
-					opponentDefect = opponentDefect + 1;
-			}
+			int opponentCoop = stats.coops(1) + stats.coops(2);
+			int opponentDefect = stats.defects(1) + stats.defects(2);
 			if (opponentDefect > opponentCoop)
 				return 1;
 			else
 				return 0;
 		}
 	}
-	class RX2 extends Player {
+	static class RX2 extends Player {
 		//TolerantPlayer looks at his opponents' histories, and only defects
 		//if at least half of the other players' actions have been defects
+		int lookback() {
+			return 1;  //the last round, plus the counts in stats
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {		
-			int opponentCoop1 = 0;
-			int opponentDefect1 = 0;
-			int opponentCoop2 = 0;
-			int opponentDefect2 = 0;
-			int myCoop = 0;
-			int myDefect = 0;
+			int opponentCoop1 = stats.coops(1);
+			int opponentDefect1 = stats.defects(1);
+			int opponentCoop2 = stats.coops(2);
+			int opponentDefect2 = stats.defects(2);
+			int myCoop = stats.coops(0);
+			int myDefect = stats.defects(0);
+			int rounds = stats.rounds();      //rounds played so far (n only indexes the histories)
 			int percentageofDefect1 = 100;    //percentage of defects done by opponent 1
 			int percentageofDefect2 = 100;    //percentage of defects done by opponent 2
 			int percentageofCoop1 = 0;        //percentage of copperate done by opponent 1
@@ -117,43 +278,25 @@ public class ThreePrisonersDilemma {
 			int percentageofDefectM2 = 0;     //percentage of defects done by my player and opponent 2
 			int percentageofCoopM2 = 0;       //percentage of cooperate done by my player and opponent 2
 
-			//Calculate the percentages as mentioned above using history of my player, opponent 1 and opponent 2
-			for (int i=0; i<n; i++) {
-				if (oppHistory1[i] == 0)
-					opponentCoop1 = opponentCoop1 + 1;
-				else
-					opponentDefect1 = opponentDefect1 + 1;
-			}
-			if(n>0){
-			percentageofDefect1 = opponentDefect1/n * 100;
-			percentageofCoop1 = opponentCoop1/n * 100;
+			//Calculate the percentages as mentioned above using the counts of my player, opponent 1 and opponent 2
+			if(rounds>0){
+			percentageofDefect1 = opponentDefect1/rounds * 100;
+			percentageofCoop1 = opponentCoop1/rounds * 100;
 			}
-			for (int i=0; i<n; i++) {
-				if (oppHistory2[i] == 0)
-					opponentCoop2 = opponentCoop2 + 1;
-				else
-					opponentDefect2 = opponentDefect2 + 1;
-			}
-			if(n>0){
-			percentageofDefect2 = opponentDefect2/n * 100;
-			percentageofCoop2 = opponentCoop2/n * 100;
+			if(rounds>0){
+			percentageofDefect2 = opponentDefect2/rounds * 100;
+			percentageofCoop2 = opponentCoop2/rounds * 100;
 			}
 			//my coop and percentage
-			for (int i=0; i<n; i++) {
-				if (myHistory[i] == 0)
-					myCoop = myCoop + 1;
-				else
-					myDefect = myDefect+ 1;
-			}
-			if(n>0){
-				percentageofmyDefect = myDefect/n * 100;
-				percentageofmyCoop = myCoop/n * 100;
+			if(rounds>0){
+				percentageofmyDefect = myDefect/rounds * 100;
+				percentageofmyCoop = myCoop/rounds * 100;
 				}
-			if(n>0){
-					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*n)) * 100;
-					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*n)) * 100;
-					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*n)) * 100;
-					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*n)) * 100;
+			if(rounds>0){
+					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*rounds)) * 100;
+					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*rounds)) * 100;
+					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*rounds)) * 100;
+					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*rounds)) * 100;
 					}
 
 			//end of calculations	
@@ -204,9 +347,31 @@ public class ThreePrisonersDilemma {
 				}			
 		}
 	}
-	class RX4 extends Player {
+	static class RX4 extends Player {
 		//TolerantPlayer looks at his opponents' histories, and only defects
 		//if at least half of the other players' actions have been defects
+		static final double[] MEMORY_ONE = {0, 0, 0, 1, 0, 1, 1, 1, 0};  //follows the opponents when they agree, else repeats itself
+		
+		int lookback() {
+			return 1;  //only the last round
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean finiteState() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 
 			if (n==0)
@@ -224,16 +389,29 @@ public class ThreePrisonersDilemma {
 
 	}
 
-	class RX3 extends Player {
+	static class RX3 extends Player {
 		//TolerantPlayer looks at his opponents' histories, and only defects
 		//if at least half of the other players' actions have been defects
+		int lookback() {
+			return 1;  //the last round, plus the counts in stats
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {		
-			int opponentCoop1 = 0;
-			int opponentDefect1 = 0;
-			int opponentCoop2 = 0;
-			int opponentDefect2 = 0;
-			int myCoop = 0;
-			int myDefect = 0;
+			int opponentCoop1 = stats.coops(1);
+			int opponentDefect1 = stats.defects(1);
+			int opponentCoop2 = stats.coops(2);
+			int opponentDefect2 = stats.defects(2);
+			int myCoop = stats.coops(0);
+			int myDefect = stats.defects(0);
+			int rounds = stats.rounds();      //rounds played so far (n only indexes the histories)
 			int percentageofDefect1 = 100;    //percentage of defects done by opponent 1
 			int percentageofDefect2 = 100;    //percentage of defects done by opponent 2
 			int percentageofCoop1 = 0;        //percentage of copperate done by opponent 1
@@ -245,43 +423,25 @@ public class ThreePrisonersDilemma {
 			int percentageofDefectM2 = 0;     //percentage of defects done by my player and opponent 2
 			int percentageofCoopM2 = 0;       //percentage of cooperate done by my player and opponent 2
 
-			//Calculate the percentages as mentioned above using history of my player, opponent 1 and opponent 2
-			for (int i=0; i<n; i++) {
-				if (oppHistory1[i] == 0)
-					opponentCoop1 = opponentCoop1 + 1;
-				else
-					opponentDefect1 = opponentDefect1 + 1;
-			}
-			if(n>0){
-			percentageofDefect1 = opponentDefect1/n * 100;
-			percentageofCoop1 = opponentCoop1/n * 100;
+			//Calculate the percentages as mentioned above using the counts of my player, opponent 1 and opponent 2
+			if(rounds>0){
+			percentageofDefect1 = opponentDefect1/rounds * 100;
+			percentageofCoop1 = opponentCoop1/rounds * 100;
 			}
-			for (int i=0; i<n; i++) {
-				if (oppHistory2[i] == 0)
-					opponentCoop2 = opponentCoop2 + 1;
-				else
-					opponentDefect2 = opponentDefect2 + 1;
-			}
-			if(n>0){
-			percentageofDefect2 = opponentDefect2/n * 100;
-			percentageofCoop2 = opponentCoop2/n * 100;
+			if(rounds>0){
+			percentageofDefect2 = opponentDefect2/rounds * 100;
+			percentageofCoop2 = opponentCoop2/rounds * 100;
 			}
 			//my coop and percentage
-			for (int i=0; i<n; i++) {
-				if (myHistory[i] == 0)
-					myCoop = myCoop + 1;
-				else
-					myDefect = myDefect+ 1;
-			}
-			if(n>0){
-				percentageofmyDefect = myDefect/n * 100;
-				percentageofmyCoop = myCoop/n * 100;
+			if(rounds>0){
+				percentageofmyDefect = myDefect/rounds * 100;
+				percentageofmyCoop = myCoop/rounds * 100;
 				}
-			if(n>0){
-					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*n)) * 100;
-					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*n)) * 100;
-					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*n)) * 100;
-					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*n)) * 100;
+			if(rounds>0){
+					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*rounds)) * 100;
+					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*rounds)) * 100;
+					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*rounds)) * 100;
+					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*rounds)) * 100;
 					}
 //--------------------------------End of calculations--------------------------------
 			if (n < 1){    //first round my player will cooperate
@@ -312,16 +472,29 @@ public class ThreePrisonersDilemma {
 	}
 
 
-	class RX extends Player {
+	static class RX extends Player {
 		//TolerantPlayer looks at his opponents' histories, and only defects
 		//if at least half of the other players' actions have been defects
+		int lookback() {
+			return 1;  //n<1 check, plus the counts in stats
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-			int opponentCoop1 = 0;
-			int opponentDefect1 = 0;
-			int opponentCoop2 = 0;
-			int opponentDefect2 = 0;
-			int myCoop = 0;
-			int myDefect = 0;
+			int opponentCoop1 = stats.coops(1);
+			int opponentDefect1 = stats.defects(1);
+			int opponentCoop2 = stats.coops(2);
+			int opponentDefect2 = stats.defects(2);
+			int myCoop = stats.coops(0);
+			int myDefect = stats.defects(0);
+			int rounds = stats.rounds();      //rounds played so far (n only indexes the histories)
 			int percentageofDefect1 = 100;    //percentage of defects done by opponent 1
 			int percentageofDefect2 = 100;    //percentage of defects done by opponent 2
 			int percentageofCoop1 = 0;        //percentage of copperate done by opponent 1
@@ -333,43 +506,25 @@ public class ThreePrisonersDilemma {
 			int percentageofDefectM2 = 0;     //percentage of defects done by my player and opponent 2
 			int percentageofCoopM2 = 0;       //percentage of cooperate done by my player and opponent 2
 
-			//Calculate the percentages as mentioned above using history of my player, opponent 1 and opponent 2
-			for (int i=0; i<n; i++) {
-				if (oppHistory1[i] == 0)
-					opponentCoop1 = opponentCoop1 + 1;
-				else
-					opponentDefect1 = opponentDefect1 + 1;
-			}
-			if(n>0){
-			percentageofDefect1 = opponentDefect1/n * 100;
-			percentageofCoop1 = opponentCoop1/n * 100;
+			//Calculate the percentages as mentioned above using the counts of my player, opponent 1 and opponent 2
+			if(rounds>0){
+			percentageofDefect1 = opponentDefect1/rounds * 100;
+			percentageofCoop1 = opponentCoop1/rounds * 100;
 			}
-			for (int i=0; i<n; i++) {
-				if (oppHistory2[i] == 0)
-					opponentCoop2 = opponentCoop2 + 1;
-				else
-					opponentDefect2 = opponentDefect2 + 1;
-			}
-			if(n>0){
-			percentageofDefect2 = opponentDefect2/n * 100;
-			percentageofCoop2 = opponentCoop2/n * 100;
+			if(rounds>0){
+			percentageofDefect2 = opponentDefect2/rounds * 100;
+			percentageofCoop2 = opponentCoop2/rounds * 100;
 			}
 			//my coop and percentage
-			for (int i=0; i<n; i++) {
-				if (myHistory[i] == 0)
-					myCoop = myCoop + 1;
-				else
-					myDefect = myDefect+ 1;
-			}
-			if(n>0){
-				percentageofmyDefect = myDefect/n * 100;
-				percentageofmyCoop = myCoop/n * 100;
+			if(rounds>0){
+				percentageofmyDefect = myDefect/rounds * 100;
+				percentageofmyCoop = myCoop/rounds * 100;
 				}
-			if(n>0){
-					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*n)) * 100;
-					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*n)) * 100;
-					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*n)) * 100;
-					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*n)) * 100;
+			if(rounds>0){
+					percentageofDefectM1 = ((myDefect+opponentDefect1)/(2*rounds)) * 100;
+					percentageofCoopM1 = ((myCoop+opponentCoop1)/(2*rounds)) * 100;
+					percentageofDefectM2 = ((myDefect+opponentDefect2)/(2*rounds)) * 100;
+					percentageofCoopM2 = ((myCoop+opponentCoop2)/(2*rounds)) * 100;
 					}
 
 			//end of calculations
@@ -414,38 +569,74 @@ public class ThreePrisonersDilemma {
 		}
 	}
 	
-	class FreakyPlayer extends Player {
+	static class FreakyPlayer extends Player {
 		//FreakyPlayer determines, at the start of the match, 
 		//either to always be nice or always be nasty. 
 		//Note that this class has a non-trivial constructor.
 		int action;
 		FreakyPlayer() {
-			if (Math.random() < 0.5)
+			if (random.nextDouble() < 0.5)
 				action = 0;  //cooperates half the time
 			else
 				action = 1;  //defects half the time
 		}
 		
+		int lookback() {
+			return 0;  //never looks at the history
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			return action;
 		}	
 	}
 
-	class T4TPlayer extends Player {
+	static class T4TPlayer extends Player {
 		//Picks a random opponent at each play, 
 		//and uses the 'tit-for-tat' strategy against them 
+		static final double[] MEMORY_ONE = {0, 0.5, 0.5, 1, 0, 0.5, 0.5, 1, 0};  //defects as often as its opponents did
+		
+		int lookback() {
+			return 1;  //only the last round
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			if (n==0) return 0; //cooperate by default
-			if (Math.random() < 0.5)
+			if (random.nextDouble() < 0.5)
 				return oppHistory1[n-1];
 			else
 				return oppHistory2[n-1];
 		}	
 	}
 
-	class Shaun extends Player {
+	static class Shaun extends Player {
 		//Picks a random opponent at each play, 
 		//and uses the 'tit-for-tat' strategy against them 
+		static final double[] MEMORY_ONE = {0, 0, 0, 1, 0, 1, 1, 1, 0};  //follows the opponents when they agree, else repeats itself
+		
+		int lookback() {
+			return 1;  //only the last round
+		}
+		
+		boolean deterministic() {
+			return true;
+		}
+		
+		boolean finiteState() {
+			return true;
+		}
+		
+		boolean stateless() {
+			return true;
+		}
+		
+		double[] memoryOne() {
+			return MEMORY_ONE;
+		}
+		
 		int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
 			if (n==0) return 0; //cooperate by default
 			if (oppHistory1[n-1]==oppHistory2[n-1])
@@ -459,96 +650,386 @@ public class ThreePrisonersDilemma {
 	/* In our tournament, each pair of strategies will play one match against each other. 
 	 This procedure simulates a single match and returns the scores. */
 	float[] scoresOfMatch(Player A, Player B, Player C, int rounds) {
-		int[] HistoryA = new int[0], HistoryB = new int[0], HistoryC = new int[0];
-		float ScoreA = 0, ScoreB = 0, ScoreC = 0;
+		return scoresOfMatch(A, B, C, rounds, null);
+	}
+
+	/* As above, and if moves is not null, also keeps a copy of every move of
+	 A, B and C in moves[0], moves[1] and moves[2]. */
+	float[] scoresOfMatch(Player A, Player B, Player C, int rounds, PackedHistory[] moves) {
+		// The histories come from a buffer that is reused between matches,
+		// so nothing is copied or allocated as the match goes on. It only
+		// keeps as many rounds as the most far-sighted player needs.
+		int window = Math.max(A.lookback(), Math.max(B.lookback(), C.lookback()));
+		// A match that can settle into a cycle is played until it does (see CycleDetector).
+		boolean detect = detectCycles && sandbox == null && window <= CycleDetector.MAX_LOOKBACK
+				&& A.deterministic() && B.deterministic() && C.deterministic()
+				&& A.finiteState() && B.finiteState() && C.finiteState();
+		// The packed record of the match slides along with the histories, unless
+		// every move is wanted, or a cycle is, which shows within 2^(3 window) +
+		// window rounds anyway.
+		MatchHistory history = MatchHistory.acquire(rounds, window, moves == null && !detect ? payoffTable : null);
+		A.stats = history.stats.view(0);
+		B.stats = history.stats.view(1);
+		C.stats = history.stats.view(2);
+		long ScoreA, ScoreB, ScoreC;
+		// With metrics on, one round in every Metrics.TIMED_ROUNDS is timed.
+		Metrics.Timer timer = metrics != null ? metrics.timer() : null;
+		boolean[] forfeited = null;
+		CycleDetector cycles = detect ? history.cycles(window) : null;
+		int played = rounds, cycleFrom = -1;
 		
-		for (int i=0; i<rounds; i++) {
-			int PlayA = A.selectAction(i, HistoryA, HistoryB, HistoryC);
-			int PlayB = B.selectAction(i, HistoryB, HistoryC, HistoryA);
-			int PlayC = C.selectAction(i, HistoryC, HistoryA, HistoryB);
-			ScoreA = ScoreA + payoff[PlayA][PlayB][PlayC];
-			ScoreB = ScoreB + payoff[PlayB][PlayC][PlayA];
-			ScoreC = ScoreC + payoff[PlayC][PlayA][PlayB];
-			HistoryA = extendIntArray(HistoryA, PlayA);
-			HistoryB = extendIntArray(HistoryB, PlayB);
-			HistoryC = extendIntArray(HistoryC, PlayC);
-		}
-		float[] result = {ScoreA/rounds, ScoreB/rounds, ScoreC/rounds};
+		try {
+			if (sandbox != null) {
+				forfeited = new boolean[3];
+				playSandboxedRounds(history, A, B, C, rounds, forfeited, timer);
+			} else for (int i=0; i<rounds; i++) {
+				int n = history.length;
+				int[] HistoryA = history.historyA, HistoryB = history.historyB, HistoryC = history.historyC;
+				boolean timed = timer != null && i % Metrics.TIMED_ROUNDS == 0;
+				long t0 = timed ? System.nanoTime() : 0;
+				int PlayA = A.selectAction(n, HistoryA, HistoryB, HistoryC);
+				long t1 = timed ? System.nanoTime() : 0;
+				int PlayB = B.selectAction(n, HistoryB, HistoryC, HistoryA);
+				long t2 = timed ? System.nanoTime() : 0;
+				int PlayC = C.selectAction(n, HistoryC, HistoryA, HistoryB);
+				if (timed) {
+					long t3 = System.nanoTime();
+					timer.record(metrics.slot(A), t1 - t0);
+					timer.record(metrics.slot(B), t2 - t1);
+					timer.record(metrics.slot(C), t3 - t2);
+				}
+				if (((PlayA | PlayB | PlayC) & ~1) != 0)
+					throw new RuntimeException("selectAction must return 0 or 1, got " + PlayA + ", " + PlayB + ", " + PlayC);
+				history.record(PlayA, PlayB, PlayC);
+				if (cycles != null && (cycleFrom = cycles.record(PayoffTable.code(PlayA, PlayB, PlayC), i + 1)) >= 0) {
+					played = i + 1;
+					break;
+				}
+			}
+			// The payoffs are summed exactly as integers, in blocks from the
+			// packed record of the match, however long it was.
+			PackedHistory[] histories = history.stats.histories;
+			long[] scores = played < rounds
+					? CycleDetector.score(payoffTable, histories, cycleFrom, played, rounds)
+					: history.stats.score(payoffTable, rounds);
+			ScoreA = scores[0];
+			ScoreB = scores[1];
+			ScoreC = scores[2];
+			if (forfeited != null) {
+				// A player that forfeited scores nothing for the match.
+				if (forfeited[0]) ScoreA = 0;
+				if (forfeited[1]) ScoreB = 0;
+				if (forfeited[2]) ScoreC = 0;
+			}
+			if (moves != null)
+				for (int s=0; s<3; s++) {
+					moves[s] = histories[s].copy();
+					if (played < rounds)
+						CycleDetector.extend(moves[s], cycleFrom, played, rounds);
+				}
+		} finally {
+			history.release();
+		}
+		float[] result = {(float) ((double) ScoreA/rounds), (float) ((double) ScoreB/rounds), (float) ((double) ScoreC/rounds)};
 		return result;
 	}
 	
-//	This is a helper function needed by scoresOfMatch.
-	int[] extendIntArray(int[] arr, int next) {
-		int[] result = new int[arr.length+1];
-		for (int i=0; i<arr.length; i++) {
-			result[i] = arr[i];
+	/* The rounds of a match played through the sandbox. A player that
+	 forfeits defects for the rest of the match without being asked. Each seat
+	 calls selectAction itself rather than through the guard, so that the JIT
+	 sees one strategy per call site, as in the plain loop. With a timer, the
+	 same rounds are timed as there, guard and all, for the seats still in. */
+	void playSandboxedRounds(MatchHistory history, Player A, Player B, Player C, int rounds, boolean[] forfeited,
+			Metrics.Timer timer) {
+		Sandbox.Guard guard = sandbox.guard();
+		boolean isolatedA = sandbox.isolates(A), isolatedB = sandbox.isolates(B), isolatedC = sandbox.isolates(C);
+		boolean outA = false, outB = false, outC = false;
+		for (int i=0; i<rounds; i++) {
+			int n = history.length;
+			int[] HistoryA = history.historyA, HistoryB = history.historyB, HistoryC = history.historyC;
+			int PlayA = 1, PlayB = 1, PlayC = 1;
+			boolean timed = timer != null && i % Metrics.TIMED_ROUNDS == 0;
+			boolean timedA = timed && !outA, timedB = timed && !outB, timedC = timed && !outC;
+			long t0 = timed ? System.nanoTime() : 0;
+			if (!outA) {
+				if (isolatedA) {
+					PlayA = guard.playIsolated(A, n, HistoryA, HistoryB, HistoryC);
+				} else {
+					guard.enter(A);
+					try {
+						PlayA = guard.leave(A, A.selectAction(n, HistoryA, HistoryB, HistoryC));
+					} catch (Exception | StackOverflowError | AssertionError e) {
+						PlayA = guard.threw(A, e);
+					}
+				}
+				if (PlayA == Sandbox.FORFEIT) { outA = true; PlayA = 1; }
+			}
+			long t1 = timed ? System.nanoTime() : 0;
+			if (!outB) {
+				if (isolatedB) {
+					PlayB = guard.playIsolated(B, n, HistoryB, HistoryC, HistoryA);
+				} else {
+					guard.enter(B);
+					try {
+						PlayB = guard.leave(B, B.selectAction(n, HistoryB, HistoryC, HistoryA));
+					} catch (Exception | StackOverflowError | AssertionError e) {
+						PlayB = guard.threw(B, e);
+					}
+				}
+				if (PlayB == Sandbox.FORFEIT) { outB = true; PlayB = 1; }
+			}
+			long t2 = timed ? System.nanoTime() : 0;
+			if (!outC) {
+				if (isolatedC) {
+					PlayC = guard.playIsolated(C, n, HistoryC, HistoryA, HistoryB);
+				} else {
+					guard.enter(C);
+					try {
+						PlayC = guard.leave(C, C.selectAction(n, HistoryC, HistoryA, HistoryB));
+					} catch (Exception | StackOverflowError | AssertionError e) {
+						PlayC = guard.threw(C, e);
+					}
+				}
+				if (PlayC == Sandbox.FORFEIT) { outC = true; PlayC = 1; }
+			}
+			if (timed) {
+				long t3 = System.nanoTime();
+				if (timedA) timer.record(metrics.slot(A), t1 - t0);
+				if (timedB) timer.record(metrics.slot(B), t2 - t1);
+				if (timedC) timer.record(metrics.slot(C), t3 - t2);
+			}
+			history.record(PlayA, PlayB, PlayC);
 		}
-		result[result.length-1] = next;
-		return result;
+		forfeited[0] = outA;
+		forfeited[1] = outB;
+		forfeited[2] = outC;
 	}
-	
-	/* The procedure makePlayer is used to reset each of the Players 
-	 (strategies) in between matches. When you add your own strategy,
-	 you will need to add a new entry to makePlayer, and change numPlayers.*/
-	int numPlayers = 90;
 
+	/* The field of the tournament: which strategies play, and how many
+	 copies of each. When you add your own strategy, register it in
+	 StrategyRegistry.builtIn() and add it here (or list the field in a file
+	 and pass it with -field). */
+	StrategyRegistry field = StrategyRegistry.builtIn()
+			.add("RX4", 1)              // your player
+			.add("T4TPlayer", 30)
+			.add("TolerantPlayer", 30)
+			.add("NastyPlayer", 29);
+
+	// One factory per entrant, resolved from the field.
+	StrategyRegistry.Factory[] entrants = field.resolve();
+
+	int numPlayers = entrants.length;
 
+	// The name of each entrant, looked up once.
+	String[] names = entrantNames();
 
+	void setField(StrategyRegistry field) {
+		this.field = field;
+		entrants = field.resolve();
+		numPlayers = entrants.length;
+		names = entrantNames();
+	}
+
+	String[] entrantNames() {
+		String[] names = new String[entrants.length];
+		for (int which=0; which<entrants.length; which++)
+			names[which] = makePlayer(which).name();
+		return names;
+	}
+
+	/* The procedure makePlayer is used to reset each of the Players 
+	 (strategies) in between matches. */
 	Player makePlayer(int which){
-		// if(which == 0) {
-		// 	// return your player
-		// 	return new RX2();
-		// }
-		// if(which == 1) {
-		// 	// return your player
-		// 	return new Shaun();
-		// }
-		if(which == 0) {
-			// return your player
-			return new RX4();
-		}
-
-		else if(which <=30){
-			return new T4TPlayer();
-		}
-		else if (which <= 60){
-			// return 30 of this player
-			return new TolerantPlayer();
-		}
-		else {
-			// return remaining player
-			return new NastyPlayer();
-		}
+		return entrants[which].create(this);
 	}
 
-	//  int numPlayers = 10;
-	//  Player makePlayer(int which) {
-	// 	 switch (which) {
-	// 	 case 0: return new TolerantPlayer();
-	// 	 case 1: return new TolerantPlayer();
-	// 	 case 2: return new NastyPlayer();
-	// 	 case 3: return new NastyPlayer();
-	// 	 case 4: return new NicePlayer();
-	// 	 case 5: return new NicePlayer();
-	// 	 case 6: return new RX();
-	// 	 case 7: return new RX();
-	// 	 case 8: return new T4TPlayer();
-	// 	 case 9: return new T4TPlayer();
-
-	// 	 }
-	// 	 throw new RuntimeException("Bad argument passed to makePlayer");
-	//  }
 	/* Finally, the remaining code actually runs the tournament. */
 	
-	public static void main (String[] args) {
+	public static void main (String[] args) throws IOException {
 		ThreePrisonersDilemma instance = new ThreePrisonersDilemma();
-		instance.runTournament();
+		double sandboxMillis = 0;
+		Set<String> isolated = new HashSet<>();
+		// "-threads N" plays the tournament on N threads, "-threads 0" uses every core.
+		// "-seed S" replays the tournament played with seed S.
+		// "-rounds R" plays every match for exactly R rounds.
+		// "-field F" reads the field from file F, one "StrategyName count" per line.
+		// "-log F" writes the result of every match to F, as CSV if F ends in .csv
+		// and as binary records otherwise (see ResultSink).
+		// "-record F" keeps every move of every match in F, for MatchLogReader.
+		// "-progress P" prints the leaders every P matches.
+		// "-metrics S" prints matches/s, rounds/s, allocation rate and ETA to stderr
+		// every S seconds, and selectAction times per strategy at the end.
+		// "-jmx" publishes the same metrics over JMX while the tournament runs.
+		// "-sandbox MS" gives every move a budget of MS milliseconds (fractions
+		// allowed), and makes players that overrun it, throw, or return anything
+		// but 0 or 1 forfeit the match instead of stopping the tournament.
+		// "-isolate A,B" also runs strategies A and B on threads of their own, so
+		// that even a selectAction that never returns only forfeits its match.
+		// "-sample K" plays K matches per player against random opponents instead
+		// of every triple, and ranks by average score (see SampledTournament).
+		// "-repeat N" plays the tournament again, in pairs, until the ranking of the
+		// strategies is settled or N pairs are played (see RepeatedTournament);
+		// it can't be combined with -log or -record.
+		// "-exact" scores matches between memory-one players by their expected
+		// payoff rather than playing them (see MarkovEvaluator); with -record,
+		// the matches are played, so that their moves can be kept.
+		// "-plugins D" registers the strategies in the jars and class files of
+		// directory D (see PluginLoader); enter them with -field.
+		for (int i=0; i+1<args.length; i++)
+			if (args[i].equals("-plugins"))
+				PluginLoader.load(Paths.get(args[i+1]), instance.field);
+		for (int i=0; i+1<args.length; i++) {
+			if (args[i].equals("-seed"))
+				instance.seed = Long.parseLong(args[i+1]);
+			if (args[i].equals("-rounds"))
+				instance.matchRounds = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-field"))
+				instance.setField(instance.field.loadField(Paths.get(args[i+1])));
+			if (args[i].equals("-log"))
+				instance.logFile = Paths.get(args[i+1]);
+			if (args[i].equals("-record"))
+				instance.recordFile = Paths.get(args[i+1]);
+			if (args[i].equals("-progress"))
+				instance.progressEvery = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-metrics")) {
+				instance.metrics = new Metrics();
+				instance.metricsEvery = Double.parseDouble(args[i+1]);
+			}
+			if (args[i].equals("-sandbox"))
+				sandboxMillis = Double.parseDouble(args[i+1]);
+			if (args[i].equals("-isolate"))
+				isolated.addAll(Arrays.asList(args[i+1].split(",")));
+			if (args[i].equals("-sample"))
+				instance.sampledMatches = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-repeat"))
+				instance.repeatedPairs = Integer.parseInt(args[i+1]);
+			if (args[i].equals("-threads")) {
+				int threads = Integer.parseInt(args[i+1]);
+				instance.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+			}
+		}
+		if (sandboxMillis > 0 || !isolated.isEmpty())
+			instance.sandbox = new Sandbox((long) ((sandboxMillis > 0 ? sandboxMillis : 100) * 1e6), isolated);
+		if (Arrays.asList(args).contains("-exact"))
+			instance.markov = new MarkovEvaluator();
+		if (Arrays.asList(args).contains("-jmx")) {
+			if (instance.metrics == null)
+				instance.metrics = new Metrics();
+			instance.metrics.registerMBean();
+		}
+		try {
+			instance.runTournament();
+		} finally {
+			if (instance.sandbox != null)
+				instance.sandbox.close();
+			if (instance.metrics != null)
+				instance.metrics.unregisterMBean();
+		}
 	}
 	
 	boolean verbose = false; // set verbose = false if you get too much text output
 	
+	int threads = 1; // set threads > 1 to play the matches on several cores
+	
+	long seed = System.nanoTime(); // the same seed always plays the same tournament
+	
+	int matchRounds = 0; // set matchRounds > 0 to play every match for that many rounds
+	
+	MatchCache matchCache = new MatchCache(); // set matchCache = null to simulate every match
+	
+	boolean detectCycles = true; // set detectCycles = false to play every round of repeating matches
+	
+	MarkovEvaluator markov = null; // set markov to score memory-one triples by their exact expected payoff
+	
+	Sandbox sandbox = null; // set sandbox to make misbehaving players forfeit instead of failing
+	
+	Metrics metrics = null; // set metrics to watch the tournament as it runs
+	
+	double metricsEvery = 0; // with metrics set, print them every that many seconds
+	
+	int progressEvery = 0; // set progressEvery > 0 to print the leaders every that many matches
+	
+	int sampledMatches = 0; // set sampledMatches > 0 to play that many matches per player instead of all
+	
+	int repeatedPairs = 0; // set repeatedPairs > 0 to repeat the tournament up to that many pairs of times
+	
+	Path logFile = null; // set logFile to keep the result of every match in a file
+	
+	Path recordFile = null; // set recordFile to keep every move of every match in a file
+	
+	// Where the result of every match goes while a tournament runs, if anywhere.
+	ResultSink results;
+	
+	// Where the moves of every match go while a tournament runs, if anywhere.
+	MatchLogWriter moveLog;
+	
 	void runTournament() {
-		float[] totalScore = new float[numPlayers];
+		ScoreBoard scores = null;
+		SampledTournament sampled = null;
+		RepeatedTournament repeated = null;
+		if (repeatedPairs > 0 && (logFile != null || recordFile != null))
+			throw new IllegalArgumentException("A repeated tournament keeps no log or record of its matches");
+		if (logFile != null) {
+			ResultSink.Format format = logFile.toString().endsWith(".csv") ? ResultSink.Format.CSV : ResultSink.Format.BINARY;
+			try {
+				results = new ResultSink(Files.newOutputStream(logFile), format, names);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not open " + logFile, e);
+			}
+		} else if (verbose) {
+			results = new ResultSink(System.out, ResultSink.Format.TEXT, names);
+		}
+		if (metrics != null) {
+			long n = numPlayers;
+			long matches = sampledMatches > 0 ? n * sampledMatches : n * (n + 1) * (n + 2) / 6;
+			metrics.begin(sampledMatches <= 0 && repeatedPairs > 0 ? 2 * repeatedPairs * matches : matches);
+			if (metricsEvery > 0)
+				metrics.startReporting(metricsEvery);
+		}
+		try {
+			if (recordFile != null) {
+				try {
+					moveLog = new MatchLogWriter(Files.newOutputStream(recordFile), seed, names);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Could not open " + recordFile, e);
+				}
+			}
+			if (sampledMatches > 0) {
+				sampled = new SampledTournament(this, sampledMatches, threads);
+				sampled.play();
+			} else if (repeatedPairs > 0) {
+				repeated = new RepeatedTournament(this, repeatedPairs, threads);
+				repeated.play();
+			} else if (threads > 1)
+				scores = new ParallelTournament(this, threads).play();
+			else
+				scores = playTournament();
+		} finally {
+			if (results != null)
+				results.close();
+			results = null;
+			if (moveLog != null)
+				moveLog.close();
+			moveLog = null;
+			if (metrics != null)
+				metrics.end();
+		}
+		if (sampled != null)
+			sampled.printResults();
+		else if (repeated != null)
+			repeated.printResults();
+		else
+			printResults(scores);
+		if (sandbox != null)
+			sandbox.printForfeits();
+	} // end of runTournament()
+	
+	ScoreBoard playTournament() {
+		ScoreBoard scores = newScoreBoard();
+		if (matchCache != null)
+			matchCache.clear();
+		PlayerPool players = new PlayerPool(this);
+		PackedHistory[] moves = moveLog != null ? new PackedHistory[3] : null;
 
 		// This loop plays each triple of players against each other.
 		// Note that we include duplicates: two copies of your strategy will play once
@@ -556,41 +1037,72 @@ public class ThreePrisonersDilemma {
 
 		for (int i=0; i<numPlayers; i++) for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
 
-			Player A = makePlayer(i); // Create a fresh copy of each player
-			Player B = makePlayer(j);
-			Player C = makePlayer(k);
-			//int rounds = 1000;
-			int rounds = 90 + (int)Math.rint(20 * Math.random()); // Between 90 and 110 rounds
-			float[] matchResults = scoresOfMatch(A, B, C, rounds); // Run match
-			totalScore[i] = totalScore[i] + matchResults[0];
-			totalScore[j] = totalScore[j] + matchResults[1];
-			totalScore[k] = totalScore[k] + matchResults[2];
-			if (verbose){
-				System.out.println("Out of " + rounds +" times");
-				System.out.println(A.name() + " scored " + matchResults[0] +
-						" points, " + B.name() + " scored " + matchResults[1] + 
-						" points, and " + C.name() + " scored " + matchResults[2] + " points.");
-			}
-		}
-		int[] sortedOrder = new int[numPlayers];
-		// This loop sorts the players by their score.
-		for (int i=0; i<numPlayers; i++) {
-			int j=i-1;
-			for (; j>=0; j--) {
-				if (totalScore[i] > totalScore[sortedOrder[j]]) 
-					sortedOrder[j+1] = sortedOrder[j];
-				else break;
-			}
-			sortedOrder[j+1] = i;
+			SplittableRandom random = MatchRandom.beginMatch(seed, i, j, k);
+			int rounds = roundsOfMatch(random);
+			Player A = players.player(0, i); // A fresh copy of each player, unless it is stateless
+			Player B = players.player(1, j);
+			Player C = players.player(2, k);
+			float[] matchResults = playMatch(A, B, C, rounds, moves); // Run match
+			scores.match(i, j, k, matchResults);
+			if (results != null)
+				results.match(i, j, k, rounds, matchResults);
+			if (moveLog != null)
+				moveLog.write(i, j, k, rounds, moves);
 		}
+		return scores;
+	}
+	
+	/* Plays a match, or reuses its scores if the same three deterministic
+	 strategies already played a match of that length. With markov set, a
+	 match of three memory-one players scores its expected payoff instead,
+	 unless its moves are wanted. Under a sandbox every match is played,
+	 since whether a move runs over time depends on the machine and its load. */
+	float[] playMatch(Player A, Player B, Player C, int rounds) {
+		return playMatch(A, B, C, rounds, null);
+	}
+
+	// As above, also filling in moves unless it is null (see scoresOfMatch).
+	float[] playMatch(Player A, Player B, Player C, int rounds, PackedHistory[] moves) {
+		if (metrics != null)
+			metrics.matchPlayed(rounds);
+		// Neither shortcut calls selectAction, so neither would see a player
+		// the sandbox has to catch.
+		if (markov != null && moves == null && sandbox == null && MarkovEvaluator.qualifies(A, B, C))
+			return markov.expectedScores(A, B, C, rounds, payoffTable);
+		if (matchCache != null && sandbox == null && MatchCache.cacheable(A, B, C))
+			return matchCache.scoresOfMatch(this, A, B, C, rounds, moves);
+		return scoresOfMatch(A, B, C, rounds, moves);
+	}
+	
+	ScoreBoard newScoreBoard() {
+		ScoreBoard scores = new ScoreBoard(names);
+		scores.reportEvery = progressEvery;
+		return scores;
+	}
+	
+	int roundsOfMatch(SplittableRandom random) {
+		int rounds = 90 + (int)Math.rint(20 * random.nextDouble()); // Between 90 and 110 rounds
+		// The draw is made even for fixed-length matches, so that the players
+		// see the same random numbers either way.
+		return matchRounds > 0 ? matchRounds : rounds;
+	}
+	
+	void printResults(ScoreBoard scores) {
+		// The players sorted by their mean score per match, which ranks them
+		// as their totals would when everyone plays as many matches.
+		int[] sortedOrder = scores.ranking();
 		
 		// Finally, print out the sorted results.
 		if (verbose) System.out.println();
-		System.out.println("Tournament Results");
-		for (int i=0; i<numPlayers; i++) 
-			System.out.println(makePlayer(sortedOrder[i]).name() + ": " 
-				+ totalScore[sortedOrder[i]] + " points.");
-		
-	} // end of runTournament()
+		System.out.println("Tournament Results (seed " + seed + ")");
+		for (int i=0; i<numPlayers; i++) {
+			int which = sortedOrder[i];
+			System.out.println(names[which] + ": " + String.format("%.4f", scores.total(which))
+				+ " points in " + scores.matches[which] + " matches, "
+				+ String.format("mean %.4f, sd %.4f", scores.mean(which), Math.sqrt(scores.variance(which))) + ".");
+		}
+		System.out.println();
+		scores.printBreakdown();
+	}
 	
 } // end of class PrisonersDilemma
@@ -0,0 +1,162 @@
+import java.util.SplittableRandom;
+
+/*
+ ThresholdPlayer is RX and RX2 with their thresholds turned into parameters,
+ so they can be tuned by ParameterSearch instead of by editing the code.
+
+ After cooperating in the first round it goes down the rules of RX, where
+ "coop1" is the share of rounds opponent 1 cooperated in, "coopM1" the share
+ of moves of the player and opponent 1 together that were cooperation, and so
+ on, all in percent:
+
+ - if follow is set and the opponents agreed last round, do what they did
+   (RX2 does this, RX does not);
+ - one opponent always cooperated and the other never: cooperate;
+ - neither opponent ever cooperated: defect;
+ - coopM1 or coopM2 above mutual: defect;
+ - coop1 and coop2 above exploit: defect;
+ - coop1 and coop2 above tolerate: cooperate;
+ - defect1 and defect2 above punish: defect;
+ - otherwise play otherwise (RX defects, RX2 cooperates).
+
+ RX and RX2 work out the shares with integer division, so every share they
+ compare is 100 if the count is all of the rounds and 0 otherwise: "never"
+ means "not always", and a threshold only matters as below 100 or not. With
+ truncate set, the shares are worked out the same way, and RX's and RX2's
+ thresholds play exactly RX and RX2. Without it the shares are exact, which
+ makes the thresholds mean what they say.
+
+ A parameter set is written
+
+	RXT:<follow>:<mutual>:<exploit>:<tolerate>:<punish>:<otherwise>:<truncate>
+
+ as in RXT:0:51:85:66:90:1:1 for RX, and can be used as a strategy name
+ anywhere a field is listed. The last part may be left out for exact
+ shares. RX3 defects whenever the opponents disagree, which no parameter
+ set does. */
+class ThresholdPlayer extends ThreePrisonersDilemma.Player {
+
+	/* A parameter set. Players of one set share it, and it tells their
+	 strategy apart from that of other sets (see Player.strategy). */
+	static final class Params {
+		final boolean follow;
+		final int mutual, exploit, tolerate, punish;
+		final int otherwise;
+		final boolean truncate;
+		final String name;
+
+		Params(boolean follow, int mutual, int exploit, int tolerate, int punish, int otherwise, boolean truncate) {
+			this.follow = follow;
+			this.mutual = percent(mutual);
+			this.exploit = percent(exploit);
+			this.tolerate = percent(tolerate);
+			this.punish = percent(punish);
+			this.otherwise = otherwise & 1;
+			this.truncate = truncate;
+			name = "RXT:" + (follow ? 1 : 0) + ":" + this.mutual + ":" + this.exploit + ":" + this.tolerate + ":"
+					+ this.punish + ":" + this.otherwise + ":" + (truncate ? 1 : 0);
+		}
+
+		private static int percent(int threshold) {
+			return Math.max(0, Math.min(100, threshold));
+		}
+
+		// A parameter set with every parameter drawn at random.
+		static Params random(SplittableRandom random) {
+			return new Params(random.nextBoolean(), random.nextInt(101), random.nextInt(101), random.nextInt(101),
+					random.nextInt(101), random.nextInt(2), random.nextBoolean());
+		}
+
+		/* This parameter set with one parameter changed: a switch flipped, or a
+		 threshold moved by up to step either way. */
+		Params mutate(SplittableRandom random, int step) {
+			int delta = random.nextInt(2 * step + 1) - step;
+			switch (random.nextInt(7)) {
+			case 0: return new Params(!follow, mutual, exploit, tolerate, punish, otherwise, truncate);
+			case 1: return new Params(follow, mutual + delta, exploit, tolerate, punish, otherwise, truncate);
+			case 2: return new Params(follow, mutual, exploit + delta, tolerate, punish, otherwise, truncate);
+			case 3: return new Params(follow, mutual, exploit, tolerate + delta, punish, otherwise, truncate);
+			case 4: return new Params(follow, mutual, exploit, tolerate, punish + delta, otherwise, truncate);
+			case 5: return new Params(follow, mutual, exploit, tolerate, punish, 1 - otherwise, truncate);
+			default: return new Params(follow, mutual, exploit, tolerate, punish, otherwise, !truncate);
+			}
+		}
+
+		static boolean isSpec(String name) {
+			return name.startsWith("RXT:");
+		}
+
+		// Reads a parameter set written as by name.
+		static Params parse(String spec) {
+			String[] parts = spec.split(":");
+			if ((parts.length != 7 && parts.length != 8) || !parts[0].equals("RXT"))
+				throw new IllegalArgumentException("Expected RXT:<follow>:<mutual>:<exploit>:<tolerate>:<punish>:<otherwise>[:<truncate>], got " + spec);
+			int[] values = new int[7];
+			for (int p=1; p<parts.length; p++)
+				values[p-1] = Integer.parseInt(parts[p]);
+			return new Params(values[0] != 0, values[1], values[2], values[3], values[4], values[5], values[6] != 0);
+		}
+	}
+
+	final Params params;
+
+	ThresholdPlayer(Params params) {
+		this.params = params;
+	}
+
+	int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+		if (n < 1)
+			return 0;
+		if (params.follow && oppHistory1[n-1] == oppHistory2[n-1])
+			return oppHistory1[n-1];
+		int rounds = stats.rounds();
+		int coop1 = stats.coops(1), coop2 = stats.coops(2), myCoop = stats.coops(0);
+		if ((coop1 == rounds && never(coop2, rounds)) || (coop2 == rounds && never(coop1, rounds)))
+			return 0;
+		if (never(coop1, rounds) && never(coop2, rounds))
+			return 1;
+		if (above(myCoop + coop1, 2 * rounds, params.mutual) || above(myCoop + coop2, 2 * rounds, params.mutual))
+			return 1;
+		if (above(coop1, rounds, params.exploit) && above(coop2, rounds, params.exploit))
+			return 1;
+		if (above(coop1, rounds, params.tolerate) && above(coop2, rounds, params.tolerate))
+			return 0;
+		if (above(rounds - coop1, rounds, params.punish) && above(rounds - coop2, rounds, params.punish))
+			return 1;
+		return params.otherwise;
+	}
+
+	// Whether count is more than percent percent of total, in exact integers
+	// or, with truncate, in RX's (100 if count is all of total, else 0).
+	private boolean above(int count, int total, int percent) {
+		if (params.truncate)
+			return (count == total ? 100 : 0) > percent;
+		return 100L * count > (long) percent * total;
+	}
+
+	// Whether a share of count out of total is 0: count is, or with truncate,
+	// count is not all of total.
+	private boolean never(int count, int total) {
+		return params.truncate ? count < total : count == 0;
+	}
+
+	int lookback() {
+		return 1;  //the last round, plus the counts in stats
+	}
+
+	boolean deterministic() {
+		return true;
+	}
+
+	boolean stateless() {
+		return true;
+	}
+
+	String name() {
+		return params.name;
+	}
+
+	Object strategy() {
+		return params;
+	}
+}